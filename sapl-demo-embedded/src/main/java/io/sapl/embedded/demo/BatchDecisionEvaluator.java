@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.util.stream.Stream;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Evaluates large batches of independent authorization subscriptions in
+ * parallel, e.g., for generating reports on the entitlements of all users.
+ *
+ * The subscriptions are pulled lazily from the source. At most 'parallelism'
+ * decisions are evaluated at the same time on the given scheduler. The
+ * decisions are returned as a Flux, so that consumers can process them while
+ * the batch is still running and can slow down the evaluation by requesting
+ * fewer decisions (backpressure).
+ */
+public class BatchDecisionEvaluator {
+
+    /**
+     * Determines the order in which decisions are emitted.
+     */
+    public enum Ordering {
+        /**
+         * Decisions are emitted in the order of the subscriptions. A slow decision
+         * holds back all later decisions, which are buffered in the meantime.
+         */
+        ORDERED,
+        /**
+         * Decisions are emitted as soon as they are available. This maximizes the
+         * throughput.
+         */
+        UNORDERED
+    }
+
+    private final PolicyDecisionPoint pdp;
+
+    private final Scheduler scheduler;
+
+    private final int parallelism;
+
+    /**
+     * Creates an evaluator using the parallel scheduler with one decision in flight
+     * per CPU core.
+     *
+     * @param pdp the PDP to evaluate the subscriptions
+     */
+    public BatchDecisionEvaluator(PolicyDecisionPoint pdp) {
+        this(pdp, Schedulers.parallel(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param pdp         the PDP to evaluate the subscriptions
+     * @param scheduler   the scheduler to evaluate the subscriptions on, e.g., a
+     *                    bounded elastic scheduler or a scheduler wrapping a
+     *                    ForkJoinPool
+     * @param parallelism the maximal number of decisions in flight
+     */
+    public BatchDecisionEvaluator(PolicyDecisionPoint pdp, Scheduler scheduler, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The parallelism of the batch evaluation must be positive.");
+        this.pdp         = pdp;
+        this.scheduler   = scheduler;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param subscriptions the subscriptions to evaluate
+     * @param ordering      the order in which to emit the decisions
+     * @return a Flux of decisions, one for each subscription
+     */
+    public Flux<BatchDecision> evaluate(Iterable<AuthorizationSubscription> subscriptions, Ordering ordering) {
+        return evaluate(Flux.fromIterable(subscriptions), ordering);
+    }
+
+    /**
+     * @param subscriptions the subscriptions to evaluate. The stream is closed once
+     *                      the batch terminates.
+     * @param ordering      the order in which to emit the decisions
+     * @return a Flux of decisions, one for each subscription
+     */
+    public Flux<BatchDecision> evaluate(Stream<AuthorizationSubscription> subscriptions, Ordering ordering) {
+        return evaluate(Flux.fromStream(subscriptions), ordering);
+    }
+
+    private Flux<BatchDecision> evaluate(Flux<AuthorizationSubscription> subscriptions, Ordering ordering) {
+        var indexedSubscriptions = subscriptions.index();
+        if (ordering == Ordering.ORDERED)
+            return indexedSubscriptions.flatMapSequential(
+                    subscription -> decideOnce(subscription.getT1(), subscription.getT2()), parallelism);
+        return indexedSubscriptions.flatMap(subscription -> decideOnce(subscription.getT1(), subscription.getT2()),
+                parallelism);
+    }
+
+    /**
+     * An error during the evaluation of a single subscription must not abort the
+     * whole batch. Thus, errors are reported as INDETERMINATE decisions, just like
+     * the PDP does for errors within policies.
+     */
+    private Flux<BatchDecision> decideOnce(long index, AuthorizationSubscription subscription) {
+        return pdp.decideOnce(subscription).onErrorReturn(AuthorizationDecision.INDETERMINATE)
+                .defaultIfEmpty(AuthorizationDecision.INDETERMINATE)
+                .map(decision -> new BatchDecision(index, subscription, decision)).subscribeOn(scheduler).flux();
+    }
+
+    /**
+     * A decision within a batch.
+     *
+     * @param index        the position of the subscription within the batch
+     * @param subscription the subscription
+     * @param decision     the decision for the subscription
+     */
+    public record BatchDecision(long index, AuthorizationSubscription subscription, AuthorizationDecision decision) {
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.grammar.sapl.AttributeFinderStep;
+import io.sapl.grammar.sapl.BasicEnvironmentAttribute;
+import io.sapl.grammar.sapl.BasicEnvironmentHeadAttribute;
+import io.sapl.grammar.sapl.HeadAttributeFinderStep;
+import io.sapl.grammar.sapl.SAPL;
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.SAPLInterpreter;
+import io.sapl.interpreter.context.AuthorizationContext;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A PDP decorator which memoizes the results of decideOnce() for subscriptions
+ * only matched by attribute-free policy documents.
+ *
+ * A document is attribute-free, if it does not contain any attribute finder
+ * (e.g., {@code subject.<pip.attribute>} or {@code <time.now>}) and does not
+ * reference the time library. The decision for a subscription only depends on
+ * the subscription and the policies, if none of the documents with attributes
+ * is applicable. As targets of SAPL documents must not contain attributes,
+ * this is decided by evaluating the targets of these documents only. If a
+ * target cannot be evaluated without further context (e.g., functions), the
+ * document is considered applicable and the subscription is not cached.
+ *
+ * Continuous decide() subscriptions are passed through to the PDP unchanged,
+ * as these already only re-evaluate on changes.
+ *
+ * The cache is invalidated by the policy updates of the decorated PDP itself,
+ * i.e., whenever the PDP switches to a new configuration, the documents are
+ * re-analyzed and all cached decisions are dropped. A decision is only stored,
+ * if no update happened between the cache miss and the decision of the PDP.
+ * Thus, a decision of the previous policies which is still in flight during an
+ * update is never served from the cache.
+ */
+public class CachingPolicyDecisionPoint implements PolicyDecisionPoint {
+
+    private static final SAPLInterpreter INTERPRETER = new DefaultSAPLInterpreter();
+
+    private static final Pattern TIME_LIBRARY = Pattern.compile("\\btime\\b");
+
+    private final PolicyDecisionPoint delegate;
+
+    private final Supplier<Collection<String>> documentSource;
+
+    private final DecisionCache cache;
+
+    private final Disposable policyUpdateSubscription;
+
+    private volatile List<AnalyzedDocument> documentsWithAttributes;
+
+    /**
+     * @param delegate       the PDP to decorate
+     * @param policyUpdates  emits whenever the PDP switched to new policies,
+     *                       e.g., the pdpConfiguration() of the
+     *                       PDPConfigurationProvider the PDP was created with
+     * @param documentSource supplies the SAPL documents loaded by the PDP
+     * @param cache          the cache for storing the decisions
+     */
+    public CachingPolicyDecisionPoint(PolicyDecisionPoint delegate, Flux<?> policyUpdates,
+            Supplier<Collection<String>> documentSource, DecisionCache cache) {
+        this.delegate            = delegate;
+        this.documentSource      = documentSource;
+        this.cache               = cache;
+        documentsWithAttributes  = analyzeDocuments();
+        policyUpdateSubscription = policyUpdates.subscribe(update -> reload());
+    }
+
+    /*
+     * The generation is incremented before and after the analysis. Decisions
+     * requested before the update completed are thus never stored, and hits of
+     * the previous policies are not served while the documents are analyzed.
+     */
+    private void reload() {
+        cache.invalidateAll();
+        documentsWithAttributes = analyzeDocuments();
+        cache.invalidateAll();
+    }
+
+    private List<AnalyzedDocument> analyzeDocuments() {
+        return documentSource.get().stream().map(CachingPolicyDecisionPoint::analyze)
+                .filter(document -> !document.attributeFree()).toList();
+    }
+
+    /**
+     * Stops listening for policy updates.
+     */
+    public void destroy() {
+        policyUpdateSubscription.dispose();
+    }
+
+    /**
+     * @return the metrics of the underlying cache
+     */
+    public DecisionCache.Statistics statistics() {
+        return cache.statistics();
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> decideOnce(AuthorizationSubscription authzSubscription) {
+        var cachedDecision = cache.get(authzSubscription);
+        if (cachedDecision != null)
+            return Mono.just(cachedDecision);
+
+        var generation = cache.generation();
+        return isCacheable(authzSubscription).flatMap(cacheable -> {
+            if (!cacheable) {
+                cache.recordBypass();
+                return delegate.decideOnce(authzSubscription);
+            }
+            cache.recordMiss();
+            return delegate.decideOnce(authzSubscription)
+                    .doOnNext(decision -> cache.put(generation, authzSubscription, decision));
+        });
+    }
+
+    @Override
+    public Flux<AuthorizationDecision> decide(AuthorizationSubscription authzSubscription) {
+        return delegate.decide(authzSubscription);
+    }
+
+    @Override
+    public Flux<IdentifiableAuthorizationDecision> decide(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decide(multiAuthzSubscription);
+    }
+
+    @Override
+    public Flux<MultiAuthorizationDecision> decideAll(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decideAll(multiAuthzSubscription);
+    }
+
+    private Mono<Boolean> isCacheable(AuthorizationSubscription authzSubscription) {
+        var documents = documentsWithAttributes;
+        if (documents.isEmpty())
+            return Mono.just(Boolean.TRUE);
+        if (documents.stream().anyMatch(document -> document.sapl() == null))
+            return Mono.just(Boolean.FALSE);
+
+        return Flux.fromIterable(documents).concatMap(document -> document.sapl().matches())
+                .all(match -> match.isBoolean() && !match.getBoolean()).onErrorReturn(Boolean.FALSE)
+                .contextWrite(ctx -> AuthorizationContext.setSubscriptionVariables(
+                        AuthorizationContext.setVariables(ctx, new HashMap<String, Val>()), authzSubscription));
+    }
+
+    private static AnalyzedDocument analyze(String source) {
+        if (INTERPRETER.parseDocument(source).isInvalid())
+            return new AnalyzedDocument(null, false);
+
+        var sapl = INTERPRETER.parse(source);
+        return new AnalyzedDocument(sapl, !TIME_LIBRARY.matcher(source).find() && !containsAttributeFinder(sapl));
+    }
+
+    private static boolean containsAttributeFinder(SAPL sapl) {
+        var elements = sapl.eAllContents();
+        while (elements.hasNext()) {
+            var element = elements.next();
+            if (element instanceof AttributeFinderStep || element instanceof HeadAttributeFinderStep
+                    || element instanceof BasicEnvironmentAttribute
+                    || element instanceof BasicEnvironmentHeadAttribute)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param sapl          the parsed document, null if the document is invalid
+     * @param attributeFree true, if the document provably does not depend on
+     *                      attributes
+     */
+    private record AnalyzedDocument(SAPL sapl, boolean attributeFree) {
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+
+/**
+ * A bounded cache for authorization decisions.
+ *
+ * Entries are keyed by the authorization subscription itself. The JSON nodes of
+ * a subscription implement equals() and hashCode() structurally, i.e., the
+ * order of the keys within objects does not matter. Thus, two subscriptions
+ * with the same content always hit the same entry.
+ *
+ * The entries are held in a concurrent Caffeine cache, so that hits of
+ * concurrent decideOnce() calls do not block each other. If the bound is
+ * exceeded, Caffeine evicts rarely used entries (Window TinyLFU).
+ *
+ * Each invalidation starts a new generation. Decisions which were requested in
+ * an older generation are not stored anymore, so that a decision evaluated
+ * against outdated policies cannot leak into the cache after a reload.
+ */
+public class DecisionCache {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder bypasses = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    private final Cache<AuthorizationSubscription, AuthorizationDecision> entries;
+
+    /**
+     * @param maximumSize the maximal number of cached decisions. If exceeded,
+     *                    rarely used entries are evicted.
+     */
+    public DecisionCache(int maximumSize) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("The maximum size of the decision cache must be positive.");
+
+        this.entries = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * @param subscription an authorization subscription
+     * @return the cached decision or null, if no decision is cached
+     */
+    public AuthorizationDecision get(AuthorizationSubscription subscription) {
+        return entries.getIfPresent(subscription);
+    }
+
+    /**
+     * @return the current generation, to be handed over to put() once the decision
+     *         is available
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Stores a decision, unless the cache was invalidated since the decision was
+     * requested. An invalidation racing with the put either clears the entry or
+     * is detected by the second check, which removes the entry again.
+     *
+     * @param requestGeneration the generation at the time of the request
+     * @param subscription      the authorization subscription
+     * @param decision          the decision for the subscription
+     */
+    public void put(long requestGeneration, AuthorizationSubscription subscription, AuthorizationDecision decision) {
+        if (requestGeneration != generation.get())
+            return;
+
+        entries.put(subscription, decision);
+        if (requestGeneration != generation.get())
+            entries.asMap().remove(subscription, decision);
+    }
+
+    /**
+     * Records a lookup which could not be answered from the cache but is eligible
+     * for caching.
+     */
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Records a lookup which is not eligible for caching at all.
+     */
+    public void recordBypass() {
+        bypasses.increment();
+    }
+
+    /**
+     * Removes all entries and starts a new generation.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+        invalidations.increment();
+    }
+
+    /**
+     * @return a snapshot of the cache metrics
+     */
+    public Statistics statistics() {
+        var stats = entries.stats();
+        return new Statistics(stats.hitCount(), misses.sum(), bypasses.sum(), stats.evictionCount(),
+                invalidations.sum(), entries.estimatedSize());
+    }
+
+    /**
+     * Snapshot of the cache metrics.
+     *
+     * @param hits          lookups answered from the cache
+     * @param misses        cacheable lookups which had to be evaluated by the PDP
+     * @param bypasses      lookups which were not eligible for caching
+     * @param evictions     entries evicted due to the size limit
+     * @param invalidations number of full invalidations
+     * @param size          approximate number of entries
+     */
+    public record Statistics(long hits, long misses, long bypasses, long evictions, long invalidations, long size) {
+
+        /**
+         * @return the ratio of hits to all lookups eligible for caching
+         */
+        public double hitRate() {
+            var lookups = hits + misses;
+            return lookups == 0L ? 0.0D : (double) hits / lookups;
+        }
+
+    }
+
+}
@@ -15,10 +15,14 @@
  */
 package io.sapl.embedded.demo;
 
+import java.time.Duration;
+import java.util.List;
+
 import io.sapl.api.interpreter.Val;
 import io.sapl.api.pip.Attribute;
 import io.sapl.api.pip.PolicyInformationPoint;
 import io.sapl.api.validation.Text;
+import io.sapl.server.lt.AttributeInstrumentation;
 import reactor.core.publisher.Flux;
 
 /**
@@ -27,13 +31,43 @@
 @PolicyInformationPoint(name = "echo", description = "PIP echoing the input value")
 public class EchoPIP {
 
+    private static final Duration ECHO_DELAY = Duration.ofMillis(500);
+
+    private static final SharedAttributeStreams SHARED_STREAMS = new SharedAttributeStreams(Duration.ofSeconds(1));
+
+    private static final AttributeInstrumentation INSTRUMENTATION = new AttributeInstrumentation();
+
     private EchoPIP() {
         // Utility Class
     }
     
     @Attribute(name = "echo")
     public static Flux<Val> echo(@Text Val value) {
-        return Flux.just(value);
+        return INSTRUMENTATION.instrument("echo.echo", INSTRUMENTATION.upstream("echo.echo", Flux.just(value)));
+    }
+
+    /**
+     * Echoes the input value after 500ms. All concurrent evaluations of this
+     * attribute for the same value share a single delayed upstream.
+     */
+    @Attribute(name = "delayed")
+    public static Flux<Val> delayed(@Text Val value) {
+        return INSTRUMENTATION.instrument("echo.delayed", SHARED_STREAMS.shared("echo.delayed", value, List.of(),
+                () -> INSTRUMENTATION.upstream("echo.delayed", Flux.just(value).delayElements(ECHO_DELAY))));
+    }
+
+    /**
+     * @return the multiplexer of the attribute streams of this PIP
+     */
+    static SharedAttributeStreams sharedStreams() {
+        return SHARED_STREAMS;
+    }
+
+    /**
+     * @return the metrics of the attributes of this PIP
+     */
+    static List<AttributeInstrumentation.Statistics> attributeStatistics() {
+        return INSTRUMENTATION.statistics();
     }
 
 }
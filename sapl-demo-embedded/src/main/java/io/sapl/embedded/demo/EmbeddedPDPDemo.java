@@ -15,21 +15,51 @@
  */
 package io.sapl.embedded.demo;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
 import java.text.DecimalFormat;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.sapl.api.interpreter.Val;
 import io.sapl.api.pdp.AuthorizationDecision;
 import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
 import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.embedded.demo.BatchDecisionEvaluator.BatchDecision;
+import io.sapl.embedded.demo.BatchDecisionEvaluator.Ordering;
+import io.sapl.interpreter.InitializationException;
 import io.sapl.pdp.EmbeddedPolicyDecisionPoint;
 import io.sapl.pdp.PolicyDecisionPointFactory;
+import io.sapl.pdp.config.PDPConfigurationProvider;
+import io.sapl.server.lt.DemoFunctionLibrary;
+import io.sapl.server.lt.DnsResolutionCache;
+import io.sapl.server.lt.SharedTickSource;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * This demo shows how to manually construct a PDP without infrastructure
@@ -54,12 +84,22 @@ public class EmbeddedPDPDemo implements Callable<Integer> {
             "--filesystem" }, description = "If set, policies and PDP configuration are loaded from the filesystem instead of the bundled resources. Set path with -p.")
     boolean filesystem;
 
+    @Option(names = { "-t",
+            "--threads" }, description = "Sets the number of worker threads used by the concurrent benchmarks. Defaults to the number of available processors.")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = { "-c",
+            "--concurrency" }, description = "Sets the maximal number of decisions in flight in the reactive concurrent benchmark. Defaults to 256.")
+    int concurrency = 256;
+
     private static final String SUBJECT = "willi";
 
     private static final String ACTION_READ = "read";
 
     private static final String ACTION_WRITE = "write";
 
+    private static final String ACTION_ECHO = "echo";
+
     private static final String RESOURCE = "something";
 
     private static final AuthorizationSubscription READ_SUBSCRIPTION = AuthorizationSubscription.of(SUBJECT,
@@ -68,6 +108,35 @@ public class EmbeddedPDPDemo implements Callable<Integer> {
     private static final AuthorizationSubscription WRITE_SUBSCRIPTION = AuthorizationSubscription.of(SUBJECT,
             ACTION_WRITE, RESOURCE);
 
+    private static final AuthorizationSubscription ECHO_SUBSCRIPTION = AuthorizationSubscription.of(SUBJECT,
+            ACTION_ECHO, RESOURCE);
+
+    private static final String RESOURCES_PATH = "/policies";
+
+    private static final int START_UP_RUNS = 20;
+
+    private static final String EMAIL_REGEX = "^[\\w!#$%&'*+/=?`{|}~^-]+(?:\\.[\\w!#$%&'*+/=?`{|}~^-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,6}$";
+
+    private static final int DISTINCT_FUNCTION_ARGUMENTS = 16;
+
+    private static final int DISTINCT_HOSTS = 16;
+
+    private static final Duration RESOLVER_LATENCY = Duration.ofMillis(5);
+
+    private static final Duration CLOCK_PERIOD = Duration.ofMillis(100);
+
+    private static final String BULK_POLICIES_PATH = "/bulk-policies";
+
+    private static final List<Integer> BULK_SIZES = List.of(1_000, 10_000, 100_000);
+
+    private static final int BULK_REQUIRED_ELEMENTS = 100;
+
+    private static final int BULK_RUNS = 10;
+
+    private static final int CLOCK_SUBSCRIBERS_PER_RUN = 5;
+
+    private static final int DECISION_CACHE_SIZE = 10_000;
+
     private static final int DEMO_RUNS = 20_000;
 
     private static final int TEST_RUNS = 20;
@@ -138,7 +207,54 @@ public Integer call() throws Exception {
 
         runPerformanceDemoSingleSequentialReactive(pdp);
 
+        runPerformanceDemoWorkerPool(pdp, threads);
+
+        runPerformanceDemoConcurrentReactive(pdp, concurrency);
+
+        /*
+         * The CachingPolicyDecisionPoint analyzes the same documents as the PDP to
+         * identify policies which do not depend on any attributes. It subscribes to the
+         * configurations of the decorated PDP and re-analyzes the documents whenever the
+         * PDP switched to new policies. The factory methods do not expose the
+         * configurations of their PDPs. Thus, the decorated PDP is created from a
+         * configuration provider kept by the demo. The bundled resources cannot change
+         * at runtime.
+         */
+        Supplier<Collection<String>> documents;
+        PDPConfigurationProvider     configurationProvider;
+        if (filesystem) {
+            var directory = PolicyDocuments.resolve(path);
+            documents             = () -> PolicyDocuments.fromDirectory(directory);
+            configurationProvider = PdpConfigurations.fromDirectory(path);
+        } else {
+            documents             = () -> PolicyDocuments.fromResources(RESOURCES_PATH);
+            configurationProvider = PdpConfigurations.fromResources(RESOURCES_PATH);
+        }
+        var cachedPdp  = new EmbeddedPolicyDecisionPoint(configurationProvider);
+        var cachingPdp = new CachingPolicyDecisionPoint(cachedPdp, configurationProvider.pdpConfiguration(),
+                documents, new DecisionCache(DECISION_CACHE_SIZE));
+
+        runPerformanceDemoDecisionCache(pdp, cachingPdp);
+
+        cachingPdp.destroy();
+        cachedPdp.destroy();
+
+        runPerformanceDemoBatch(pdp, threads);
+
+        runSharedAttributeStreamsDemo(pdp, concurrency);
+
+        runPerformanceDemoStartUp();
+
+        runPerformanceDemoFunctionMemoization();
+
+        runPerformanceDemoDnsCache(concurrency);
+
+        runPerformanceDemoSharedClock();
+
+        runPerformanceDemoBulkFunctions();
+
         LOGGER.info("End of demo.");
+        cachingPdp.destroy();
         pdp.destroy();
         return 0;
     }
@@ -204,6 +320,12 @@ private static void runPerformanceDemoSingleBlocking(PolicyDecisionPoint pdp) {
         LOGGER.info(LINE);
     }
 
+    /**
+     * Note, that .subscribe() returns as soon as the subscription is made. If the
+     * PDP would deliver decisions asynchronously, this benchmark would only measure
+     * the time to subscribe and not the time until the decision is available. For
+     * benchmarks waiting for each decision to complete, see Demo Parts 5 and 6.
+     */
     private static void runPerformanceDemoSingleSequentialReactive(PolicyDecisionPoint pdp) {
         var runs = getRuns();
         LOGGER.info("");
@@ -226,6 +348,505 @@ private static void runPerformanceDemoSingleSequentialReactive(PolicyDecisionPoi
         LOGGER.info(LINE);
     }
 
+    /**
+     * Multiple application threads access the PDP concurrently in a blocking
+     * manner, as it would be the case in a traditional servlet based application.
+     * Each task measures the latency from issuing the subscription until the first
+     * decision is available.
+     */
+    private static void runPerformanceDemoWorkerPool(PolicyDecisionPoint pdp, int threads)
+            throws InterruptedException, ExecutionException {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 5: Perform a small benchmark for blocking decisions from a pool of {} threads.",
+                threads);
+
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            LOGGER.info("Warming up for {} runs...", runs);
+            runOnWorkerPool(pdp, executor, runs);
+            LOGGER.info("Measure time for {} runs...", runs);
+            long   start     = System.nanoTime();
+            long[] latencies = runOnWorkerPool(pdp, executor, runs);
+            long   end       = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for blocking PDP access from a worker pool:", runs, start, end);
+            logLatencies(latencies);
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    private static long[] runOnWorkerPool(PolicyDecisionPoint pdp, ExecutorService executor, int runs)
+            throws InterruptedException, ExecutionException {
+        var latencies = new long[runs];
+        var futures   = new ArrayList<Future<?>>(runs);
+        for (int i = 0; i < runs; i++) {
+            final var run = i;
+            futures.add(executor.submit(() -> {
+                long begin = System.nanoTime();
+                pdp.decide(READ_SUBSCRIPTION).blockFirst();
+                latencies[run] = System.nanoTime() - begin;
+            }));
+        }
+        for (var future : futures) {
+            future.get();
+        }
+        return latencies;
+    }
+
+    /**
+     * The PDP is accessed without blocking any application thread. Up to
+     * 'concurrency' decisions are in flight at the same time and are evaluated on
+     * the parallel scheduler. The benchmark waits for the last decision before
+     * stopping the clock.
+     */
+    private static void runPerformanceDemoConcurrentReactive(PolicyDecisionPoint pdp, int concurrency) {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 6: Perform a small benchmark for reactive decisions using .flatMap() with concurrency {}.",
+                concurrency);
+
+        LOGGER.info("Warming up for {} runs...", runs);
+        runConcurrentReactive(pdp, concurrency, runs);
+        LOGGER.info("Measure time for {} runs...", runs);
+        long   start     = System.nanoTime();
+        long[] latencies = runConcurrentReactive(pdp, concurrency, runs);
+        long   end       = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for concurrent .flatMap() access:", runs, start, end);
+        logLatencies(latencies);
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    private static long[] runConcurrentReactive(PolicyDecisionPoint pdp, int concurrency, int runs) {
+        var latencies = new long[runs];
+        Flux.range(0, runs).flatMap(run -> Mono.defer(() -> {
+            long begin = System.nanoTime();
+            return pdp.decide(READ_SUBSCRIPTION).next()
+                    .doOnNext(decision -> latencies[run] = System.nanoTime() - begin);
+        }).subscribeOn(Schedulers.parallel()), concurrency).blockLast();
+        return latencies;
+    }
+
+    /**
+     * The 'policy write' document does not use any attributes. Thus, its decisions
+     * only depend on the subscription and can be answered from the cache until
+     * the policies change. The 'policy read' document uses the attribute
+     * 'echo.echo'. Decisions for the read subscription are always evaluated by the
+     * PDP.
+     */
+    private static void runPerformanceDemoDecisionCache(PolicyDecisionPoint pdp,
+            CachingPolicyDecisionPoint cachingPdp) {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 7: Perform a small benchmark for .decideOnce() with and without a decision cache.");
+
+        LOGGER.info("Warming up for {} runs...", runs);
+        for (int i = 0; i < runs; i++) {
+            pdp.decideOnce(WRITE_SUBSCRIPTION).block();
+            cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block();
+        }
+        LOGGER.info("Measure time for {} runs...", runs);
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            pdp.decideOnce(WRITE_SUBSCRIPTION).block();
+        }
+        long end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for .decideOnce() access without cache:", runs, start, end);
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block();
+        }
+        end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for .decideOnce() access with cache:", runs, start, end);
+
+        final var readDecision = cachingPdp.decideOnce(READ_SUBSCRIPTION).block();
+        LOGGER.info("");
+        LOGGER.info("Decision for action 'read' (depends on attributes, not cached): {}",
+                readDecision != null ? readDecision.getDecision() : "null");
+
+        var statistics = cachingPdp.statistics();
+        LOGGER.info("");
+        LOGGER.info("Decision cache statistics:");
+        LOGGER.info("Hits      : {}", statistics.hits());
+        LOGGER.info("Misses    : {}", statistics.misses());
+        LOGGER.info("Bypasses  : {}", statistics.bypasses());
+        LOGGER.info("Evictions : {}", statistics.evictions());
+        LOGGER.info("Size      : {}", statistics.size());
+        LOGGER.info("Hit rate  : {}", decFormat.format(statistics.hitRate()));
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Batch jobs can hand over a large number of independent subscriptions at once.
+     * The BatchDecisionEvaluator evaluates them in parallel and streams the
+     * decisions back, either in the order of the subscriptions or as soon as they
+     * are available.
+     */
+    private static void runPerformanceDemoBatch(PolicyDecisionPoint pdp, int threads) {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 8: Perform a small benchmark for batch evaluation with parallelism {}.", threads);
+
+        var batch     = IntStream.range(0, runs).mapToObj(i -> i % 2 == 0 ? READ_SUBSCRIPTION : WRITE_SUBSCRIPTION)
+                .toList();
+        var scheduler = Schedulers.newParallel("batch-evaluation", threads);
+        try {
+            var evaluator = new BatchDecisionEvaluator(pdp, scheduler, threads);
+
+            LOGGER.info("Warming up for {} runs...", runs);
+            runSequentialDecideOnce(pdp, batch);
+            countPermits(evaluator.evaluate(batch, Ordering.ORDERED));
+            countPermits(evaluator.evaluate(batch, Ordering.UNORDERED));
+
+            LOGGER.info("Measure time for {} runs...", runs);
+            long start   = System.nanoTime();
+            long permits = runSequentialDecideOnce(pdp, batch);
+            long end     = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for sequential .decideOnce() access:", runs, start, end);
+            LOGGER.info("Permits: {}", permits);
+
+            start   = System.nanoTime();
+            permits = countPermits(evaluator.evaluate(batch, Ordering.ORDERED));
+            end     = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for ordered batch evaluation:", runs, start, end);
+            LOGGER.info("Permits: {}", permits);
+
+            start   = System.nanoTime();
+            permits = countPermits(evaluator.evaluate(batch.stream(), Ordering.UNORDERED));
+            end     = System.nanoTime();
+            LOGGER.info("");
+            logResults("Benchmark results for unordered batch evaluation:", runs, start, end);
+            LOGGER.info("Permits: {}", permits);
+        } finally {
+            scheduler.dispose();
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    private static long runSequentialDecideOnce(PolicyDecisionPoint pdp, List<AuthorizationSubscription> batch) {
+        long permits = 0L;
+        for (var subscription : batch) {
+            var decision = pdp.decideOnce(subscription).block();
+            if (decision != null && decision.getDecision() == Decision.PERMIT)
+                permits++;
+        }
+        return permits;
+    }
+
+    private static long countPermits(Flux<BatchDecision> decisions) {
+        var permits = decisions.filter(decision -> decision.decision().getDecision() == Decision.PERMIT).count()
+                .block();
+        return permits == null ? 0L : permits;
+    }
+
+    /**
+     * The 'policy echo' document evaluates resource.<echo.delayed>, which takes
+     * 500ms to emit. The EchoPIP shares one upstream between all evaluations of
+     * this attribute for the same resource. Without sharing, each decision would
+     * subscribe to its own upstream.
+     */
+    private static void runSharedAttributeStreamsDemo(PolicyDecisionPoint pdp, int concurrency) {
+        var runs = Math.min(getRuns(), concurrency);
+        LOGGER.info("");
+        LOGGER.info("Demo Part 9: Evaluate {} concurrent decisions sharing the attribute resource.<echo.delayed>.",
+                runs);
+
+        var streams                     = EchoPIP.sharedStreams();
+        var subscriptionsBefore         = streams.subscriptions();
+        var upstreamSubscriptionsBefore = streams.upstreamSubscriptions();
+        long start   = System.nanoTime();
+        var  permits = Flux.range(0, runs).flatMap(run -> pdp.decide(ECHO_SUBSCRIPTION).next(), runs)
+                .filter(decision -> decision.getDecision() == Decision.PERMIT).count().block();
+        long end     = System.nanoTime();
+        LOGGER.info("");
+        logResults("Results for concurrent decisions with shared attribute streams:", runs, start, end);
+        LOGGER.info("Permits                : {}", permits);
+        LOGGER.info("Attribute subscriptions: {}", streams.subscriptions() - subscriptionsBefore);
+        LOGGER.info("Upstream subscriptions : {}", streams.upstreamSubscriptions() - upstreamSubscriptionsBefore);
+        LOGGER.info("");
+        LOGGER.info("Attribute metrics of the EchoPIP:");
+        for (var statistics : EchoPIP.attributeStatistics()) {
+            LOGGER.info("{}: subscriptions {}, values {}, errors {}, active {}, mean time to first value {}ms",
+                    statistics.attributeName(), statistics.subscriptions(), statistics.values(), statistics.errors(),
+                    statistics.active(), decFormat.format(statistics.meanTimeToFirstValueMs()));
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Measures the start-up of a PDP for the bundled policies, i.e., creating the
+     * PDP, which loads and parses all documents, until the first decision is
+     * available. The PDP offers no way to load pre-parsed documents. Thus, the
+     * second measurement shows the additional start-up cost of the
+     * CachingPolicyDecisionPoint, which parses the documents once more for its
+     * analysis.
+     */
+    private static void runPerformanceDemoStartUp() throws InitializationException {
+        var runs = useTestRuns ? 1 : START_UP_RUNS;
+        LOGGER.info("");
+        LOGGER.info("Demo Part 10: Perform a small benchmark for the start-up of a PDP.");
+
+        LOGGER.info("Warming up...");
+        startPdp(false);
+        startPdp(true);
+        LOGGER.info("Measure time for {} runs...", runs);
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            startPdp(false);
+        }
+        long end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for starting a PDP until its first decision:", runs, start, end);
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            startPdp(true);
+        }
+        end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for starting a PDP with decision cache until its first decision:", runs, start,
+                end);
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    private static void startPdp(boolean withDecisionCache) throws InitializationException {
+        if (!withDecisionCache) {
+            var pdp = PolicyDecisionPointFactory.resourcesPolicyDecisionPoint(List::of,
+                    () -> List.of(EchoPIP.class), List::of, () -> List.of(SimpleFunctionLibrary.class));
+            try {
+                pdp.decideOnce(WRITE_SUBSCRIPTION).block();
+            } finally {
+                pdp.destroy();
+            }
+            return;
+        }
+        var configurationProvider = PdpConfigurations.fromResources(RESOURCES_PATH);
+        var pdp                   = new EmbeddedPolicyDecisionPoint(configurationProvider);
+        try {
+            var cachingPdp = new CachingPolicyDecisionPoint(pdp, configurationProvider.pdpConfiguration(),
+                    () -> PolicyDocuments.fromResources(RESOURCES_PATH), new DecisionCache(DECISION_CACHE_SIZE));
+            cachingPdp.decideOnce(WRITE_SUBSCRIPTION).block();
+            cachingPdp.destroy();
+        } finally {
+            pdp.destroy();
+        }
+    }
+
+    /**
+     * Functions in SAPL are free of side effects. Thus, libraries can opt in to
+     * memoize the results of expensive functions. This part compares the function
+     * matches() of the DemoFunctionLibrary from the extension module with and
+     * without memoization for a small set of recurring arguments. Then it reports
+     * the metrics of the FunctionResultCache.
+     */
+    private static void runPerformanceDemoFunctionMemoization() {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 11: Perform a small benchmark for memoized function results.");
+
+        var texts    = IntStream.range(0, DISTINCT_FUNCTION_ARGUMENTS)
+                .mapToObj(i -> Val.of("user" + i + "@example.com")).toList();
+        var regex    = Val.of(EMAIL_REGEX);
+        var plain    = new DemoFunctionLibrary(false);
+        var memoized = new DemoFunctionLibrary(true);
+
+        LOGGER.info("Warming up for {} runs...", runs);
+        for (int i = 0; i < runs; i++) {
+            var text = texts.get(i % DISTINCT_FUNCTION_ARGUMENTS);
+            plain.matches(text, regex);
+            memoized.matches(text, regex);
+        }
+        LOGGER.info("Measure time for {} runs...", runs);
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            plain.matches(texts.get(i % DISTINCT_FUNCTION_ARGUMENTS), regex);
+        }
+        long end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for matches():", runs, start, end);
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            memoized.matches(texts.get(i % DISTINCT_FUNCTION_ARGUMENTS), regex);
+        }
+        end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for memoized matches():", runs, start, end);
+
+        LOGGER.info("");
+        LOGGER.info("Function result cache statistics:");
+        for (var statistics : memoized.cacheStatistics()) {
+            LOGGER.info("{}: hits {}, misses {}, evictions {}, size {}, weight {}, hit rate {}", statistics.name(),
+                    statistics.hits(), statistics.misses(), statistics.evictions(), statistics.size(),
+                    statistics.weight(), decFormat.format(statistics.hitRate()));
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * PIPs polling hosts resolve the same few host names over and over again. The
+     * DnsResolutionCache from the extension module caches resolutions for a
+     * time-to-live and lets concurrent lookups share a resolution in progress.
+     * This part uses a stand-in resolver with a fixed latency, so that the
+     * results do not depend on the network.
+     */
+    private static void runPerformanceDemoDnsCache(int concurrency) {
+        var runs = getRuns();
+        LOGGER.info("");
+        LOGGER.info("Demo Part 12: Perform a small benchmark for {} concurrent host name lookups.", concurrency);
+
+        Function<String, Mono<InetAddress>> resolver = EmbeddedPDPDemo::standInResolution;
+        var                                 cache    = new DnsResolutionCache(resolver, Duration.ofSeconds(30),
+                Duration.ofSeconds(5), DISTINCT_HOSTS, Clock.systemUTC());
+
+        LOGGER.info("Measure time for {} runs...", runs);
+        long start = System.nanoTime();
+        Flux.range(0, runs).flatMap(i -> resolver.apply("host" + i % DISTINCT_HOSTS), concurrency).blockLast();
+        long end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for uncached lookups:", runs, start, end);
+
+        start = System.nanoTime();
+        Flux.range(0, runs).flatMap(i -> cache.resolve("host" + i % DISTINCT_HOSTS), concurrency).blockLast();
+        end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for cached lookups:", runs, start, end);
+
+        var statistics = cache.statistics();
+        LOGGER.info("");
+        LOGGER.info("DNS cache statistics:");
+        LOGGER.info("Hits      : {}", statistics.hits());
+        LOGGER.info("Coalesced : {}", statistics.coalesced());
+        LOGGER.info("Misses    : {}", statistics.misses());
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Time-based attributes usually run one timer per subscription. The
+     * SharedTickSource from the extension module runs a single timer per period,
+     * aligned to wall-clock boundaries, and fans its ticks out to all
+     * subscribers. This part waits for one tick with many subscribers and
+     * compares the number of scheduled timers.
+     */
+    private static void runPerformanceDemoSharedClock() {
+        var subscribers = getRuns() * CLOCK_SUBSCRIBERS_PER_RUN;
+        LOGGER.info("");
+        LOGGER.info("Demo Part 13: Wait for one clock tick with {} subscribers.", subscribers);
+
+        var timers = new AtomicInteger();
+        long start = System.nanoTime();
+        Flux.range(0, subscribers).flatMap(
+                i -> Flux.interval(CLOCK_PERIOD).doOnSubscribe(subscription -> timers.incrementAndGet()).next(),
+                subscribers).blockLast();
+        long end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for one timer per subscription:", subscribers, start, end);
+        LOGGER.info("Scheduled timers : {}", timers.get());
+
+        var tickSource = new SharedTickSource(Clock.systemUTC());
+        var peakTimers = new AtomicInteger();
+        start = System.nanoTime();
+        Flux.range(0, subscribers).flatMap(i -> tickSource.ticks(CLOCK_PERIOD).next()
+                .doOnNext(tick -> peakTimers.accumulateAndGet(tickSource.activeTimers(), Math::max)), subscribers)
+                .blockLast();
+        end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for a shared clock:", subscribers, start, end);
+        LOGGER.info("Scheduled timers : {}", peakTimers.get());
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    /**
+     * Policies iterating large arrays evaluate one interpreted step per element.
+     * The bulk functions of the DemoFunctionLibrary from the extension module work
+     * on whole arrays in a single call. This part evaluates the same checks, all
+     * required entitlements present and any entitlement matching a regular
+     * expression, once as policy expressions and once with bulk functions.
+     */
+    private static void runPerformanceDemoBulkFunctions() throws IOException, InitializationException {
+        LOGGER.info("");
+        LOGGER.info("Demo Part 14: Compare element-wise policy expressions with bulk functions.");
+
+        /*
+         * A dedicated PDP, as the DemoFunctionLibrary shares its name with the
+         * SimpleFunctionLibrary of this demo.
+         */
+        var directory = Files.createTempDirectory("sapl-bulk-policies");
+        for (var document : PolicyDocuments.byNameFromResources(BULK_POLICIES_PATH).entrySet()) {
+            Files.writeString(directory.resolve(document.getKey()), document.getValue());
+        }
+        var pdp = PolicyDecisionPointFactory.filesystemPolicyDecisionPoint(directory.toString(), List::of, List::of,
+                () -> List.of(new DemoFunctionLibrary()), List::of);
+        try {
+            for (var size : useTestRuns ? BULK_SIZES.subList(0, 1) : BULK_SIZES) {
+                var entitlements = new ArrayList<String>(size + 1);
+                IntStream.range(0, size).forEach(i -> entitlements.add("entitlement_" + i));
+                entitlements.add("admin_" + size);
+                var required = IntStream.range(0, BULK_REQUIRED_ELEMENTS)
+                        .mapToObj(i -> "entitlement_" + i * (size / BULK_REQUIRED_ELEMENTS)).toList();
+                var subject  = Map.of("required", required);
+                var resource = Map.of("entitlements", entitlements);
+                runBulkBenchmark(pdp, "policy expressions", size,
+                        AuthorizationSubscription.of(subject, "sapl", resource));
+                runBulkBenchmark(pdp, "bulk functions", size,
+                        AuthorizationSubscription.of(subject, "functions", resource));
+            }
+        } finally {
+            pdp.destroy();
+            for (var document : PolicyDocuments.byNameFromDirectory(directory).keySet()) {
+                Files.delete(directory.resolve(document));
+            }
+            Files.delete(directory);
+        }
+        LOGGER.info("");
+        LOGGER.info(LINE);
+    }
+
+    private static void runBulkBenchmark(PolicyDecisionPoint pdp, String title, int size,
+            AuthorizationSubscription subscription) {
+        var runs = useTestRuns ? 1 : BULK_RUNS;
+        pdp.decideOnce(subscription).block();
+        var permits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            var decision = pdp.decideOnce(subscription).block();
+            if (decision != null && decision.getDecision() == Decision.PERMIT)
+                permits++;
+        }
+        long end = System.nanoTime();
+        LOGGER.info("");
+        logResults("Benchmark results for " + title + " with " + size + " elements:", runs, start, end);
+        LOGGER.info("Permits : {}", permits);
+    }
+
+    private static Mono<InetAddress> standInResolution(String hostname) {
+        var address = new byte[] { 127, 0, 0, (byte) (Integer.parseInt(hostname.substring(4)) + 1) };
+        return Mono.delay(RESOLVER_LATENCY).then(Mono.fromCallable(() -> {
+            try {
+                return InetAddress.getByAddress(hostname, address);
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+    }
+
     private static double nanoToMs(double nanoseconds) {
         return nanoseconds / MILLION;
     }
@@ -240,7 +861,24 @@ private static void logResults(String title, int runs, long start, long end) {
             LOGGER.info("Runs  : {}", runs);
             LOGGER.info("Total : {} s", decFormat.format(nanoToS((double) end - start)));
             LOGGER.info("Avg.  : {} ms", decFormat.format(nanoToMs(((double) end - start) / runs)));
+            LOGGER.info("Thrpt.: {} decisions/s", decFormat.format(runs / nanoToS((double) end - start)));
         }
     }
 
+    private static void logLatencies(long[] latencies) {
+        if (LOGGER.isInfoEnabled()) {
+            var sorted = latencies.clone();
+            Arrays.sort(sorted);
+            LOGGER.info("p50   : {} ms", decFormat.format(nanoToMs(percentile(sorted, 50.0D))));
+            LOGGER.info("p90   : {} ms", decFormat.format(nanoToMs(percentile(sorted, 90.0D))));
+            LOGGER.info("p99   : {} ms", decFormat.format(nanoToMs(percentile(sorted, 99.0D))));
+            LOGGER.info("Max.  : {} ms", decFormat.format(nanoToMs(sorted[sorted.length - 1])));
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        var index = (int) Math.ceil(percentile / 100.0D * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.time.Clock;
+import java.util.List;
+
+import io.sapl.functions.FilterFunctionLibrary;
+import io.sapl.functions.SchemaValidationLibrary;
+import io.sapl.functions.StandardFunctionLibrary;
+import io.sapl.functions.TemporalFunctionLibrary;
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.InitializationException;
+import io.sapl.interpreter.functions.AnnotationFunctionContext;
+import io.sapl.interpreter.pip.AnnotationAttributeContext;
+import io.sapl.pdp.config.PDPConfigurationProvider;
+import io.sapl.pdp.config.VariablesAndCombinatorSource;
+import io.sapl.pdp.config.filesystem.FileSystemVariablesAndCombinatorSource;
+import io.sapl.pdp.config.fixed.FixedFunctionsAndAttributesPDPConfigurationProvider;
+import io.sapl.pdp.config.resources.ResourcesVariablesAndCombinatorSource;
+import io.sapl.pip.TimePolicyInformationPoint;
+import io.sapl.prp.PrpUpdateEventSource;
+import io.sapl.prp.filesystem.FileSystemPrpUpdateEventSource;
+import io.sapl.prp.resources.ResourcesPrpUpdateEventSource;
+
+/**
+ * Creates the configuration providers of the demo PDPs with the same policy
+ * sources, function libraries and policy information points the
+ * PolicyDecisionPointFactory uses.
+ *
+ * A PDP created with new EmbeddedPolicyDecisionPoint(provider) switches to a
+ * new configuration whenever provider.pdpConfiguration() emits. Keeping a
+ * reference to the provider allows for observing the policy updates of the PDP,
+ * e.g., to invalidate a decision cache, which the factory methods do not
+ * expose.
+ */
+public class PdpConfigurations {
+
+    private PdpConfigurations() {
+        // Utility Class
+    }
+
+    /**
+     * @param path a folder in the bundled resources, e.g., '/policies'
+     * @return the configuration provider for the policies bundled in the
+     *         resources
+     * @throws InitializationException if a library or PIP cannot be loaded
+     */
+    public static PDPConfigurationProvider fromResources(String path) throws InitializationException {
+        return configurationProvider(new ResourcesVariablesAndCombinatorSource(path),
+                new ResourcesPrpUpdateEventSource(path, new DefaultSAPLInterpreter()));
+    }
+
+    /**
+     * @param path a directory in the file system, which is monitored for changes
+     * @return the configuration provider for the policies in the directory
+     * @throws InitializationException if a library or PIP cannot be loaded
+     */
+    public static PDPConfigurationProvider fromDirectory(String path) throws InitializationException {
+        return configurationProvider(new FileSystemVariablesAndCombinatorSource(path),
+                new FileSystemPrpUpdateEventSource(path, new DefaultSAPLInterpreter()));
+    }
+
+    private static PDPConfigurationProvider configurationProvider(VariablesAndCombinatorSource variablesSource,
+            PrpUpdateEventSource policySource) throws InitializationException {
+        var attributeContext = new AnnotationAttributeContext(
+                () -> List.of(new TimePolicyInformationPoint(Clock.systemUTC())), () -> List.of(EchoPIP.class));
+        var functionContext  = new AnnotationFunctionContext(List::of,
+                () -> List.of(FilterFunctionLibrary.class, StandardFunctionLibrary.class,
+                        TemporalFunctionLibrary.class, SchemaValidationLibrary.class, SimpleFunctionLibrary.class));
+        return new FixedFunctionsAndAttributesPDPConfigurationProvider(attributeContext, functionContext,
+                variablesSource, List.of(), List.of(), policySource);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Reads the raw SAPL documents from the same locations the
+ * PolicyDecisionPointFactory loads them from. This allows for analyzing the
+ * documents independently of the PDP.
+ */
+public class PolicyDocuments {
+
+    private static final String SAPL_EXTENSION = ".sapl";
+
+    private PolicyDocuments() {
+        // Utility Class
+    }
+
+    /**
+     * @param path a directory in the file system. A leading '~' is resolved to
+     *             the home directory of the user.
+     * @return the resolved path
+     */
+    public static Path resolve(String path) {
+        if (path.startsWith("~"))
+            return Path.of(System.getProperty("user.home") + path.substring(1));
+        return Path.of(path);
+    }
+
+    /**
+     * @param directory a directory in the file system
+     * @return the content of all SAPL documents in the directory
+     */
+    public static List<String> fromDirectory(Path directory) {
+        return List.copyOf(byNameFromDirectory(directory).values());
+    }
+
+    /**
+     * @param path a folder in the bundled resources, e.g., '/policies'. Works for
+     *             both, exploded class paths and JAR files.
+     * @return the content of all SAPL documents in the folder
+     */
+    public static List<String> fromResources(String path) {
+        return List.copyOf(byNameFromResources(path).values());
+    }
+
+    /**
+     * @param directory a directory in the file system
+     * @return the content of all SAPL documents in the directory, sorted by file
+     *         name
+     */
+    public static SortedMap<String, String> byNameFromDirectory(Path directory) {
+        var documents = new TreeMap<String, String>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.toString().endsWith(SAPL_EXTENSION))
+                    .forEach(file -> documents.put(file.getFileName().toString(), read(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return documents;
+    }
+
+    /**
+     * @param path a folder in the bundled resources, e.g., '/policies'. Works for
+     *             both, exploded class paths and JAR files.
+     * @return the content of all SAPL documents in the folder, sorted by file name
+     */
+    public static SortedMap<String, String> byNameFromResources(String path) {
+        var url = PolicyDocuments.class.getResource(path);
+        if (url == null)
+            return new TreeMap<>();
+
+        URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+        if (!"jar".equals(uri.getScheme()))
+            return byNameFromDirectory(Path.of(uri));
+
+        try (var fileSystem = FileSystems.newFileSystem(uri, Map.of())) {
+            return byNameFromDirectory(fileSystem.provider().getPath(uri));
+        } catch (FileSystemAlreadyExistsException e) {
+            return byNameFromDirectory(FileSystems.getFileSystem(uri).provider().getPath(uri));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
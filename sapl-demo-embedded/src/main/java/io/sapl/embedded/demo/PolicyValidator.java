@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.sapl.interpreter.DefaultSAPLInterpreter;
+import io.sapl.interpreter.SAPLInterpreter;
+
+/**
+ * Build step parsing all SAPL documents of the project. Invalid documents fail
+ * the build, instead of being reported by the PDP at runtime.
+ *
+ * The step is bound to the 'process-classes' phase in the POM and can be
+ * invoked manually with:
+ *
+ * <pre>
+ * mvn process-classes
+ * </pre>
+ */
+public class PolicyValidator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PolicyValidator.class);
+
+    private static final SAPLInterpreter INTERPRETER = new DefaultSAPLInterpreter();
+
+    private PolicyValidator() {
+        // Utility Class
+    }
+
+    /**
+     * @param args the folders containing the SAPL documents
+     * @throws IllegalStateException if a document is invalid
+     */
+    public static void main(String... args) {
+        if (args.length == 0)
+            throw new IllegalArgumentException("Usage: PolicyValidator <policy folder>...");
+
+        var invalid = new ArrayList<String>();
+        var valid   = 0;
+        for (var folder : args) {
+            var documents = PolicyDocuments.byNameFromDirectory(Path.of(folder));
+            var failed    = invalidDocuments(documents.entrySet().stream()
+                    .map(document -> new NamedDocument(folder + "/" + document.getKey(), document.getValue()))
+                    .toList());
+            invalid.addAll(failed);
+            valid += documents.size() - failed.size();
+        }
+        if (!invalid.isEmpty())
+            throw new IllegalStateException("Invalid SAPL documents: " + invalid);
+
+        LOGGER.info("Validated {} SAPL documents.", valid);
+    }
+
+    /**
+     * @param documents the documents to parse
+     * @return the names of the invalid documents
+     */
+    static List<String> invalidDocuments(List<NamedDocument> documents) {
+        return documents.stream().filter(document -> INTERPRETER.parseDocument(document.source()).isInvalid())
+                .map(NamedDocument::name).toList();
+    }
+
+    /**
+     * @param name   the name of the document, e.g., its path
+     * @param source the SAPL source of the document
+     */
+    record NamedDocument(String name, String source) {
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.sapl.api.interpreter.Val;
+import reactor.core.publisher.Flux;
+
+/**
+ * Multiplexes identical attribute streams of a Policy Information Point.
+ *
+ * Without sharing, each policy evaluation subscribes to its own attribute
+ * stream. E.g., 10.000 concurrent subscriptions evaluating
+ * {@code resource.<echo.delayed>} for the same resource create 10.000 identical
+ * upstream streams.
+ *
+ * With sharing, all subscribers of the same attribute name, left-hand value and
+ * arguments are connected to a single upstream. The latest value is replayed to
+ * late subscribers. Once the last subscriber cancels, the upstream is kept
+ * alive for a grace period, so that rapidly re-subscribing policies do not
+ * restart the upstream.
+ */
+public class SharedAttributeStreams {
+
+    private final Duration gracePeriod;
+
+    private final Map<AttributeKey, Flux<Val>> streams = new ConcurrentHashMap<>();
+
+    private final LongAdder upstreamSubscriptions = new LongAdder();
+
+    private final LongAdder subscriptions = new LongAdder();
+
+    /**
+     * @param gracePeriod the time an upstream stays connected after its last
+     *                    subscriber cancelled
+     */
+    public SharedAttributeStreams(Duration gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * @param attributeName the fully qualified name of the attribute
+     * @param leftHandValue the left-hand value of the attribute,
+     *                      Val.UNDEFINED for environment attributes
+     * @param arguments     the arguments of the attribute
+     * @param upstream      creates the attribute stream, if no shared stream is
+     *                      available
+     * @return a stream sharing the upstream with all identical attribute
+     *         subscriptions
+     */
+    public Flux<Val> shared(String attributeName, Val leftHandValue, List<Val> arguments,
+            Supplier<Flux<Val>> upstream) {
+        var key = new AttributeKey(attributeName, keyOf(leftHandValue), arguments.stream().map(this::keyOf).toList());
+        return Flux.defer(() -> {
+            subscriptions.increment();
+            return streams.computeIfAbsent(key, k -> share(k, upstream));
+        });
+    }
+
+    /**
+     * @return the number of subscriptions made to upstream attribute streams
+     */
+    public long upstreamSubscriptions() {
+        return upstreamSubscriptions.sum();
+    }
+
+    /**
+     * @return the number of subscriptions made by policy evaluations
+     */
+    public long subscriptions() {
+        return subscriptions.sum();
+    }
+
+    /**
+     * @return the number of currently shared upstreams
+     */
+    public int activeUpstreams() {
+        return streams.size();
+    }
+
+    private Flux<Val> share(AttributeKey key, Supplier<Flux<Val>> upstream) {
+        var shared = new AtomicReference<Flux<Val>>();
+        shared.set(Flux.defer(upstream).doOnSubscribe(subscription -> upstreamSubscriptions.increment())
+                .doFinally(signal -> streams.remove(key, shared.get())).replay(1).refCount(1, gracePeriod));
+        return shared.get();
+    }
+
+    private Object keyOf(Val value) {
+        if (value.isError())
+            return List.of("error", String.valueOf(value.getMessage()));
+        if (value.isUndefined())
+            return List.of("undefined");
+        return value.get();
+    }
+
+    private record AttributeKey(String attributeName, Object leftHandValue, List<Object> arguments) {
+    }
+
+}
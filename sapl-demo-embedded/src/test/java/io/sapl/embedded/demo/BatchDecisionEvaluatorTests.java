@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.embedded.demo.BatchDecisionEvaluator.BatchDecision;
+import io.sapl.embedded.demo.BatchDecisionEvaluator.Ordering;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+class BatchDecisionEvaluatorTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int ERROR = -1;
+
+    private static final int EMPTY = -2;
+
+    /*
+     * The resource of each subscription is the delay of its decision in
+     * milliseconds. Later subscriptions are decided faster than earlier ones.
+     */
+    private static final List<AuthorizationSubscription> SLOWEST_FIRST = IntStream.of(150, 100, 50, 0)
+            .mapToObj(BatchDecisionEvaluatorTests::subscription).toList();
+
+    private final StubPolicyDecisionPoint pdp = new StubPolicyDecisionPoint(subscription -> {
+        var resource = subscription.getResource().asInt();
+        if (resource == ERROR)
+            return Mono.error(new IllegalStateException("evaluation failed"));
+        if (resource == EMPTY)
+            return Mono.empty();
+        return Mono.delay(Duration.ofMillis(resource)).thenReturn(AuthorizationDecision.PERMIT);
+    });
+
+    private final BatchDecisionEvaluator evaluator = new BatchDecisionEvaluator(pdp, Schedulers.parallel(), 4);
+
+    @Test
+    void orderedEvaluationEmitsDecisionsInTheOrderOfTheSubscriptions() {
+        StepVerifier.create(evaluator.evaluate(SLOWEST_FIRST, Ordering.ORDERED).map(BatchDecision::index))
+                .expectNext(0L, 1L, 2L, 3L).expectComplete().verify(TIMEOUT);
+    }
+
+    @Test
+    void unorderedEvaluationEmitsDecisionsAsSoonAsTheyAreAvailable() {
+        StepVerifier.create(evaluator.evaluate(SLOWEST_FIRST.stream(), Ordering.UNORDERED).map(BatchDecision::index))
+                .expectNext(3L, 2L, 1L, 0L).expectComplete().verify(TIMEOUT);
+    }
+
+    @Test
+    void failedOrEmptyEvaluationsAreIndeterminateWithoutAbortingTheBatch() {
+        var batch = List.of(subscription(0), subscription(ERROR), subscription(EMPTY), subscription(0));
+        StepVerifier.create(evaluator.evaluate(batch, Ordering.ORDERED).map(BatchDecision::decision))
+                .expectNext(AuthorizationDecision.PERMIT, AuthorizationDecision.INDETERMINATE,
+                        AuthorizationDecision.INDETERMINATE, AuthorizationDecision.PERMIT)
+                .expectComplete().verify(TIMEOUT);
+    }
+
+    @Test
+    void decisionsCarryTheirSubscription() {
+        StepVerifier.create(evaluator.evaluate(SLOWEST_FIRST, Ordering.UNORDERED))
+                .recordWith(ArrayList::new).expectNextCount(4).consumeRecordedWith(
+                        decisions -> decisions.forEach(decision -> Assertions.assertEquals(
+                                SLOWEST_FIRST.get((int) decision.index()), decision.subscription())))
+                .expectComplete().verify(TIMEOUT);
+    }
+
+    @Test
+    void atMostParallelismDecisionsAreInFlight() {
+        var inFlight    = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        var countingPdp = new StubPolicyDecisionPoint(subscription -> Mono.fromRunnable(
+                () -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                .then(Mono.delay(Duration.ofMillis(5))).thenReturn(AuthorizationDecision.PERMIT)
+                .doOnTerminate(inFlight::decrementAndGet));
+        var batch       = IntStream.range(0, 100).mapToObj(BatchDecisionEvaluatorTests::subscription).toList();
+
+        StepVerifier.create(new BatchDecisionEvaluator(countingPdp, Schedulers.parallel(), 3)
+                .evaluate(batch, Ordering.UNORDERED)).expectNextCount(100).expectComplete().verify(TIMEOUT);
+        Assertions.assertEquals(100, countingPdp.evaluations());
+        Assertions.assertTrue(maxInFlight.get() <= 3, "in flight: " + maxInFlight.get());
+    }
+
+    @Test
+    void nonPositiveParallelismIsRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new BatchDecisionEvaluator(pdp, Schedulers.parallel(), 0));
+    }
+
+    private static AuthorizationSubscription subscription(int resource) {
+        return AuthorizationSubscription.of("willi", "read", resource);
+    }
+
+}
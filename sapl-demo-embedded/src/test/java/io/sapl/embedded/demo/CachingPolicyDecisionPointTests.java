@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class CachingPolicyDecisionPointTests {
+
+    private static final String WRITE_POLICY = "policy \"policy write\" permit action == \"write\"";
+
+    private static final String READ_POLICY = "policy \"policy read\" permit action == \"read\" "
+            + "where subject.<echo.echo> == \"willi\";";
+
+    private static final String WRITE_WITH_ATTRIBUTE_POLICY = "policy \"policy write\" permit action == \"write\" "
+            + "where subject.<echo.echo> == \"willi\";";
+
+    private static final AuthorizationSubscription WRITE_SUBSCRIPTION = AuthorizationSubscription.of("willi",
+            "write", "something");
+
+    private static final AuthorizationSubscription READ_SUBSCRIPTION = AuthorizationSubscription.of("willi", "read",
+            "something");
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final Sinks.Many<Object> policyUpdates = Sinks.many().multicast().directBestEffort();
+
+    private final AtomicReference<List<String>> documents = new AtomicReference<>(
+            List.of(WRITE_POLICY, READ_POLICY));
+
+    private final AtomicReference<Mono<AuthorizationDecision>> answer = new AtomicReference<>(
+            Mono.just(AuthorizationDecision.PERMIT));
+
+    private final StubPolicyDecisionPoint delegate = new StubPolicyDecisionPoint(subscription -> answer.get());
+
+    private final CachingPolicyDecisionPoint pdp = new CachingPolicyDecisionPoint(delegate, policyUpdates.asFlux(),
+            documents::get, new DecisionCache(10));
+
+    @Test
+    void decisionsOfAttributeFreeSubscriptionsAreServedFromTheCache() {
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+
+        var statistics = pdp.statistics();
+        Assertions.assertEquals(1, delegate.evaluations());
+        Assertions.assertEquals(1L, statistics.misses());
+        Assertions.assertEquals(1L, statistics.hits());
+        Assertions.assertEquals(1L, statistics.size());
+    }
+
+    @Test
+    void decisionsOfSubscriptionsDependingOnAttributesAreAlwaysEvaluated() {
+        StepVerifier.create(pdp.decideOnce(READ_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+        StepVerifier.create(pdp.decideOnce(READ_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+
+        var statistics = pdp.statistics();
+        Assertions.assertEquals(2, delegate.evaluations());
+        Assertions.assertEquals(2L, statistics.bypasses());
+        Assertions.assertEquals(0L, statistics.hits());
+        Assertions.assertEquals(0L, statistics.size());
+    }
+
+    @Test
+    void policyUpdatesOfThePdpInvalidateTheCache() {
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+
+        answer.set(Mono.just(AuthorizationDecision.DENY));
+        policyUpdates.tryEmitNext("new policies");
+
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.DENY)
+                .verifyComplete();
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.DENY)
+                .verifyComplete();
+        Assertions.assertEquals(2, delegate.evaluations());
+    }
+
+    @Test
+    void policyUpdatesOfThePdpReanalyzeTheDocuments() {
+        documents.set(List.of(WRITE_WITH_ATTRIBUTE_POLICY, READ_POLICY));
+        policyUpdates.tryEmitNext("new policies");
+
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+        Assertions.assertEquals(2, delegate.evaluations());
+        Assertions.assertEquals(2L, pdp.statistics().bypasses());
+    }
+
+    @Test
+    void decisionsInFlightDuringPolicyUpdateAreNotCached() {
+        var outdatedDecision = Sinks.<AuthorizationDecision>one();
+        answer.set(outdatedDecision.asMono());
+        var inFlight = StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION))
+                .expectNext(AuthorizationDecision.PERMIT).expectComplete().verifyLater();
+
+        answer.set(Mono.just(AuthorizationDecision.DENY));
+        policyUpdates.tryEmitNext("new policies");
+        outdatedDecision.tryEmitValue(AuthorizationDecision.PERMIT);
+        inFlight.verify(TIMEOUT);
+
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.DENY)
+                .verifyComplete();
+        Assertions.assertEquals(2, delegate.evaluations());
+        Assertions.assertEquals(0L, pdp.statistics().hits());
+    }
+
+    @Test
+    void destroyedPdpIgnoresPolicyUpdates() {
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+
+        pdp.destroy();
+        policyUpdates.tryEmitNext("new policies");
+
+        StepVerifier.create(pdp.decideOnce(WRITE_SUBSCRIPTION)).expectNext(AuthorizationDecision.PERMIT)
+                .verifyComplete();
+        Assertions.assertEquals(1, delegate.evaluations());
+    }
+
+}
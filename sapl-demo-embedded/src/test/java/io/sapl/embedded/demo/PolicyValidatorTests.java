@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.sapl.embedded.demo.PolicyValidator.NamedDocument;
+
+class PolicyValidatorTests {
+
+    private static final String VALID = "policy \"valid\" permit action == \"read\"";
+
+    private static final String INVALID = "policy \"invalid\" permit action ==";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void invalidDocumentsAreReportedByName() {
+        var invalid = PolicyValidator.invalidDocuments(
+                List.of(new NamedDocument("valid.sapl", VALID), new NamedDocument("invalid.sapl", INVALID)));
+
+        Assertions.assertEquals(List.of("invalid.sapl"), invalid);
+    }
+
+    @Test
+    void bundledPoliciesAreValid() {
+        Assertions.assertDoesNotThrow(
+                () -> PolicyValidator.main("src/main/resources/policies", "src/main/resources/bulk-policies"));
+    }
+
+    @Test
+    void folderWithInvalidDocumentFailsTheBuildStep() throws IOException {
+        Files.writeString(directory.resolve("valid.sapl"), VALID);
+        Files.writeString(directory.resolve("invalid.sapl"), INVALID);
+        var folder = directory.toString();
+
+        var exception = Assertions.assertThrows(IllegalStateException.class, () -> PolicyValidator.main(folder));
+        Assertions.assertTrue(exception.getMessage().contains("invalid.sapl"));
+    }
+
+}
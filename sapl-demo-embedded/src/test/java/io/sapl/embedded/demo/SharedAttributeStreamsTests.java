@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.interpreter.Val;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class SharedAttributeStreamsTests {
+
+    private static final String ATTRIBUTE = "echo.delayed";
+
+    private static final Duration GRACE_PERIOD = Duration.ofMillis(50);
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final SharedAttributeStreams streams = new SharedAttributeStreams(GRACE_PERIOD);
+
+    private final Sinks.Many<Val> source = Sinks.many().replay().latest();
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private final Supplier<Flux<Val>> upstream = () -> {
+        upstreamCalls.incrementAndGet();
+        return source.asFlux();
+    };
+
+    @Test
+    void identicalAttributeSubscriptionsShareOneUpstream() {
+        var first  = StepVerifier.create(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream))
+                .expectNextMatches(value -> "x".equals(value.getText())).thenCancel().verifyLater();
+        var second = StepVerifier.create(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream))
+                .expectNextMatches(value -> "x".equals(value.getText())).thenCancel().verifyLater();
+
+        source.tryEmitNext(Val.of("x"));
+        first.verify(TIMEOUT);
+        second.verify(TIMEOUT);
+
+        Assertions.assertEquals(1, upstreamCalls.get());
+        Assertions.assertEquals(1L, streams.upstreamSubscriptions());
+        Assertions.assertEquals(2L, streams.subscriptions());
+        Assertions.assertEquals(1, streams.activeUpstreams());
+    }
+
+    @Test
+    void lateSubscribersReceiveTheLatestValueOfTheSharedUpstream() {
+        var first = StepVerifier.create(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream))
+                .expectNextMatches(value -> "x".equals(value.getText()))
+                .expectNextMatches(value -> "y".equals(value.getText())).thenCancel().verifyLater();
+        source.tryEmitNext(Val.of("x"));
+
+        StepVerifier.create(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream).take(1))
+                .expectNextMatches(value -> "x".equals(value.getText())).expectComplete().verify(TIMEOUT);
+        source.tryEmitNext(Val.of("y"));
+        first.verify(TIMEOUT);
+
+        Assertions.assertEquals(1L, streams.upstreamSubscriptions());
+    }
+
+    @Test
+    void differentLeftHandValuesOrArgumentsUseSeparateUpstreams() {
+        source.tryEmitNext(Val.of("x"));
+        StepVerifier.create(Flux.merge(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream).take(1),
+                streams.shared(ATTRIBUTE, Val.of("b"), List.of(), upstream).take(1),
+                streams.shared(ATTRIBUTE, Val.of("a"), List.of(Val.of(1)), upstream).take(1),
+                streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream).take(1))).expectNextCount(4)
+                .expectComplete().verify(TIMEOUT);
+
+        Assertions.assertEquals(3L, streams.upstreamSubscriptions());
+        Assertions.assertEquals(4L, streams.subscriptions());
+    }
+
+    @Test
+    void upstreamIsReleasedAfterTheGracePeriodOfTheLastSubscriber() throws InterruptedException {
+        source.tryEmitNext(Val.of("x"));
+        StepVerifier.create(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream).take(1)).expectNextCount(1)
+                .expectComplete().verify(TIMEOUT);
+
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (streams.activeUpstreams() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(GRACE_PERIOD.toMillis());
+        }
+        Assertions.assertEquals(0, streams.activeUpstreams());
+
+        StepVerifier.create(streams.shared(ATTRIBUTE, Val.of("a"), List.of(), upstream).take(1)).expectNextCount(1)
+                .expectComplete().verify(TIMEOUT);
+        Assertions.assertEquals(2L, streams.upstreamSubscriptions());
+    }
+
+}
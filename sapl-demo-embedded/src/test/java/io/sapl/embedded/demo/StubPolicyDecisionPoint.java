@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.embedded.demo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A PDP answering each subscription with the decision of a function and
+ * counting the evaluations.
+ */
+class StubPolicyDecisionPoint implements PolicyDecisionPoint {
+
+    private final Function<AuthorizationSubscription, Mono<AuthorizationDecision>> decisions;
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    StubPolicyDecisionPoint(Function<AuthorizationSubscription, Mono<AuthorizationDecision>> decisions) {
+        this.decisions = decisions;
+    }
+
+    int evaluations() {
+        return evaluations.get();
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> decideOnce(AuthorizationSubscription authzSubscription) {
+        return Mono.defer(() -> {
+            evaluations.incrementAndGet();
+            return decisions.apply(authzSubscription);
+        });
+    }
+
+    @Override
+    public Flux<AuthorizationDecision> decide(AuthorizationSubscription authzSubscription) {
+        return decideOnce(authzSubscription).flux();
+    }
+
+    @Override
+    public Flux<IdentifiableAuthorizationDecision> decide(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return Flux.error(new UnsupportedOperationException());
+    }
+
+    @Override
+    public Flux<MultiAuthorizationDecision> decideAll(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return Flux.error(new UnsupportedOperationException());
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.api.interpreter.Val;
+import reactor.core.publisher.Flux;
+
+/**
+ * Records metrics of the attribute streams of Policy Information Points.
+ *
+ * When a decision is slow, it is often unclear which attribute caused the
+ * delay. A PIP opts in by routing each attribute stream it returns through
+ * {@link #instrument(String, Flux)}. For each attribute, the following metrics
+ * are recorded, tagged with the attribute name:
+ *
+ * <ul>
+ * <li>sapl.attribute.subscriptions: the number of subscriptions,</li>
+ * <li>sapl.attribute.first.value: the time from subscription to the first
+ * value,</li>
+ * <li>sapl.attribute.values: the number of emitted values, i.e., the emission
+ * rate,</li>
+ * <li>sapl.attribute.errors: the number of errors, i.e., error values and
+ * failed streams,</li>
+ * <li>sapl.attribute.active: the number of currently running upstream
+ * streams.</li>
+ * </ul>
+ *
+ * The active streams are counted where the upstream is subscribed, not per
+ * subscriber. A PIP sharing one upstream between many subscribers, e.g., a
+ * probe loop per host, routes the shared upstream through
+ * {@link #upstream(String, Flux)} before multicasting it. Thus, 10.000
+ * subscribers of one probe loop count as one active stream.
+ *
+ * Additionally, each terminated stream is recorded as a JFR event named
+ * io.sapl.AttributeStream, which can be correlated with the other events of a
+ * flight recording.
+ *
+ * The metrics are always available through {@link #statistics()}. If
+ * Micrometer is on the class path, they are also published to a Micrometer
+ * registry. Spring Boot adds its registries to the global registry, which is
+ * used by default. Several instrumentations may publish the same attribute to
+ * the same registry. They share its meters, including the gauge of active
+ * streams. Micrometer is an optional dependency. Without it, nothing is
+ * published, and the PIPs work in plain Java applications as well.
+ */
+public class AttributeInstrumentation {
+
+    private static final boolean MICROMETER_PRESENT = isPresent("io.micrometer.core.instrument.MeterRegistry");
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0D;
+
+    private final MeterRegistry registry;
+
+    private final Map<String, AttributeMeters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an instrumentation publishing to the global registry, if
+     * Micrometer is on the class path.
+     */
+    public AttributeInstrumentation() {
+        this(MICROMETER_PRESENT ? MicrometerAttributeMeters.globalRegistry() : null);
+    }
+
+    /**
+     * @param registry the registry to publish the metrics to, or null to only
+     *                 record them for {@link #statistics()}
+     */
+    public AttributeInstrumentation(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param attributeName the fully qualified name of the attribute, e.g.,
+     *                      demo.reachable
+     * @param attribute     the attribute stream
+     * @return the attribute stream, recording metrics for each subscription
+     */
+    public Flux<Val> instrument(String attributeName, Flux<Val> attribute) {
+        return Flux.defer(() -> {
+            var attributeMeters = meters.computeIfAbsent(attributeName, this::createMeters);
+            var event           = new AttributeStreamEvent();
+            var start           = System.nanoTime();
+            var first           = new AtomicBoolean(true);
+            event.attribute = attributeName;
+            event.begin();
+            attributeMeters.subscribed();
+            return attribute.doOnNext(value -> {
+                attributeMeters.emitted(value.isError());
+                event.values++;
+                if (value.isError())
+                    event.errors++;
+                if (first.compareAndSet(true, false)) {
+                    var timeToFirstValue = System.nanoTime() - start;
+                    attributeMeters.firstValue(timeToFirstValue);
+                    event.timeToFirstValue = timeToFirstValue;
+                }
+            }).doOnError(error -> {
+                attributeMeters.failed();
+                event.errors++;
+            }).doFinally(signal -> {
+                event.termination = signal.toString();
+                event.commit();
+            });
+        });
+    }
+
+    /**
+     * Counts the subscriptions to the upstream of an attribute as active streams.
+     * For shared upstreams, apply this before multicasting, e.g., before
+     * {@code replay(1).refCount()}. For attributes without sharing, apply this to
+     * the attribute stream itself.
+     *
+     * @param <T>           the type of the upstream values
+     * @param attributeName the fully qualified name of the attribute, e.g.,
+     *                      demo.reachable
+     * @param upstream      the upstream of the attribute
+     * @return the upstream, counting itself as active while subscribed
+     */
+    public <T> Flux<T> upstream(String attributeName, Flux<T> upstream) {
+        return Flux.defer(() -> {
+            var active = meters.computeIfAbsent(attributeName, this::createMeters).active;
+            active.incrementAndGet();
+            return upstream.doFinally(signal -> active.decrementAndGet());
+        });
+    }
+
+    /**
+     * @return a snapshot of the metrics of all instrumented attributes, sorted by
+     *         attribute name
+     */
+    public List<Statistics> statistics() {
+        return meters.entrySet().stream().map(entry -> entry.getValue().statistics(entry.getKey()))
+                .sorted(Comparator.comparing(Statistics::attributeName)).toList();
+    }
+
+    private AttributeMeters createMeters(String attributeName) {
+        if (registry == null)
+            return new AttributeMeters(new AtomicInteger(), null);
+
+        var published = MicrometerAttributeMeters.register(registry, attributeName);
+        return new AttributeMeters(published.active(), published);
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, AttributeInstrumentation.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * A snapshot of the metrics of an attribute.
+     *
+     * @param attributeName          the name of the attribute
+     * @param subscriptions          the number of subscriptions
+     * @param values                 the number of emitted values
+     * @param errors                 the number of errors
+     * @param active                 the number of currently running upstream
+     *                               streams
+     * @param meanTimeToFirstValueMs the mean time to the first value in
+     *                               milliseconds
+     */
+    public record Statistics(String attributeName, long subscriptions, long values, long errors, int active,
+            double meanTimeToFirstValueMs) {
+    }
+
+    /*
+     * The counters behind statistics(). If published, the Micrometer meters are
+     * updated alongside and the active streams are counted by the counter of the
+     * shared gauge.
+     */
+    private static final class AttributeMeters {
+
+        private final LongAdder subscriptions = new LongAdder();
+
+        private final LongAdder values = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder firstValues = new LongAdder();
+
+        private final LongAdder firstValueNanos = new LongAdder();
+
+        private final AtomicInteger active;
+
+        private final MicrometerAttributeMeters published;
+
+        private AttributeMeters(AtomicInteger active, MicrometerAttributeMeters published) {
+            this.active    = active;
+            this.published = published;
+        }
+
+        private void subscribed() {
+            subscriptions.increment();
+            if (published != null)
+                published.subscribed();
+        }
+
+        private void emitted(boolean error) {
+            values.increment();
+            if (error)
+                errors.increment();
+            if (published != null)
+                published.emitted(error);
+        }
+
+        private void failed() {
+            errors.increment();
+            if (published != null)
+                published.failed();
+        }
+
+        private void firstValue(long nanos) {
+            firstValues.increment();
+            firstValueNanos.add(nanos);
+            if (published != null)
+                published.firstValue(nanos);
+        }
+
+        private Statistics statistics(String attributeName) {
+            var count = firstValues.sum();
+            var mean  = count == 0L ? 0.0D : firstValueNanos.sum() / NANOS_PER_MILLI / count;
+            return new Statistics(attributeName, subscriptions.sum(), values.sum(), errors.sum(), active.get(), mean);
+        }
+
+    }
+
+}
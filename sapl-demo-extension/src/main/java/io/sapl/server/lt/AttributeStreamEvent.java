@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event recording the lifetime of a single attribute stream, from the
+ * subscription to its termination.
+ */
+@Name("io.sapl.AttributeStream")
+@Label("Attribute Stream")
+@Category({ "SAPL", "Attributes" })
+@Description("The lifetime of an attribute stream of a Policy Information Point")
+class AttributeStreamEvent extends Event {
+
+    @Label("Attribute")
+    String attribute;
+
+    @Label("Values")
+    long values;
+
+    @Label("Errors")
+    long errors;
+
+    @Label("Time to First Value")
+    @Timespan(Timespan.NANOSECONDS)
+    long timeToFirstValue;
+
+    @Label("Termination")
+    String termination;
+
+}
@@ -15,8 +15,20 @@
  */
 package io.sapl.server.lt;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import io.sapl.api.functions.Function;
 import io.sapl.api.functions.FunctionLibrary;
 import io.sapl.api.interpreter.Val;
@@ -46,9 +58,44 @@
  * graphical front-end. It has no impact on the evaluation of policies at
  * runtime.
  */
-@FunctionLibrary(name = "simple", description = "This function library contains two simple functions for demo purposes.")
+@FunctionLibrary(name = "simple", description = "This function library contains simple functions for demo purposes.")
 public class DemoFunctionLibrary {
 
+    private static final int CACHE_SIZE = 1_000;
+
+    private static final long CACHE_WEIGHT = 1_000_000L;
+
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+
+    /*
+     * As SAPL functions have no side effects, their results can be memoized. This
+     * only pays off for expensive functions like matches(), which compiles a
+     * regular expression. For trivial functions like length() the cache lookup
+     * costs more than the function itself.
+     */
+    private final FunctionResultCache matchesCache;
+
+    /*
+     * Compiled regular expressions of the bulk functions, least recently used
+     * expressions are evicted.
+     */
+    private final Cache<String, Pattern> patterns = Caffeine.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    /**
+     * Creates the library with memoization of matches().
+     */
+    public DemoFunctionLibrary() {
+        this(true);
+    }
+
+    /**
+     * @param memoize false, to evaluate matches() for each call, e.g., for
+     *                comparing both variants
+     */
+    public DemoFunctionLibrary(boolean memoize) {
+        matchesCache = memoize ? new FunctionResultCache("simple.matches", CACHE_WEIGHT) : null;
+    }
+
     /**
      * Functions in SAPL are always mapping a number of {@code Val} parameters to a
      * single {@code Val} output. There is no such thing as a {@code void} function
@@ -95,4 +142,172 @@ public Val append(@Text @Number Val... parameters) {
         return Val.of(builder.toString());
     }
 
+    /**
+     * Checks if a text matches a regular expression. Compiling the expression is
+     * comparatively expensive. Thus, the results are memoized by default.
+     *
+     * @param text  a text
+     * @param regex a regular expression
+     * @return true, if the whole text matches the regular expression
+     */
+    @Function
+    public Val matches(@Text Val text, @Text Val regex) {
+        if (matchesCache == null)
+            return matches(new Val[] { text, regex });
+        return matchesCache.apply(DemoFunctionLibrary::matches, text, regex);
+    }
+
+    private static Val matches(Val[] arguments) {
+        try {
+            return Val.of(Pattern.compile(arguments[1].getText()).matcher(arguments[0].getText()).matches());
+        } catch (PatternSyntaxException e) {
+            return Val.error("Invalid regular expression: %s", e.getMessage());
+        }
+    }
+
+    /*
+     * The following functions work on whole arrays in a single call. Expressing
+     * the same in policies, e.g., subject.required[?(@ in resource.scopes)],
+     * evaluates one interpreted step per element and scans the second array for
+     * each of them. Here, the second array is hashed once instead.
+     */
+
+    /**
+     * @param array  an array
+     * @param others another array
+     * @return the elements of array, which are contained in others, in the order
+     *         of array
+     */
+    @Function
+    public Val intersect(@Array Val array, @Array Val others) {
+        var lookup = hashed(others);
+        var result = JSON.arrayNode();
+        for (var element : array.get()) {
+            if (lookup.contains(element))
+                result.add(element);
+        }
+        return Val.of(result);
+    }
+
+    /**
+     * @param array    an array
+     * @param elements the elements to look up
+     * @return true, if array contains all of the elements
+     */
+    @Function
+    public Val containsAll(@Array Val array, @Array Val elements) {
+        var lookup = hashed(array);
+        for (var element : elements.get()) {
+            if (!lookup.contains(element))
+                return Val.FALSE;
+        }
+        return Val.TRUE;
+    }
+
+    /**
+     * @param array    an array
+     * @param elements the elements to look up
+     * @return true, if array contains at least one of the elements
+     */
+    @Function
+    public Val containsAny(@Array Val array, @Array Val elements) {
+        var lookup = hashed(array);
+        for (var element : elements.get()) {
+            if (lookup.contains(element))
+                return Val.TRUE;
+        }
+        return Val.FALSE;
+    }
+
+    /**
+     * The regular expression is compiled only once and reused for all elements
+     * and later calls.
+     *
+     * @param array an array of texts
+     * @param regex a regular expression
+     * @return true, if at least one text of the array matches the regular
+     *         expression. Elements which are no texts do not match.
+     */
+    @Function
+    public Val anyMatch(@Array Val array, @Text Val regex) {
+        return match(array, regex, false);
+    }
+
+    /**
+     * @param array an array of texts
+     * @param regex a regular expression
+     * @return true, if all elements of the array are texts matching the regular
+     *         expression
+     */
+    @Function
+    public Val allMatch(@Array Val array, @Text Val regex) {
+        return match(array, regex, true);
+    }
+
+    /**
+     * @param array   an array
+     * @param minimum the lower bound, inclusive
+     * @param maximum the upper bound, inclusive
+     * @return the numbers of the array within the bounds, in the order of the
+     *         array. Elements which are no numbers are dropped.
+     */
+    @Function
+    public Val inRange(@Array Val array, @Number Val minimum, @Number Val maximum) {
+        var lower  = minimum.get().decimalValue();
+        var upper  = maximum.get().decimalValue();
+        var result = JSON.arrayNode();
+        for (var element : array.get()) {
+            if (element.isNumber() && element.decimalValue().compareTo(lower) >= 0
+                    && element.decimalValue().compareTo(upper) <= 0)
+                result.add(element);
+        }
+        return Val.of(result);
+    }
+
+    /**
+     * @param array an array
+     * @return the array without duplicates, keeping the first occurrence of each
+     *         element
+     */
+    @Function
+    public Val distinct(@Array Val array) {
+        var result = JSON.arrayNode();
+        for (var element : hashed(array)) {
+            result.add(element);
+        }
+        return Val.of(result);
+    }
+
+    /**
+     * @return the metrics of the result caches of all memoized functions
+     */
+    public List<FunctionResultCache.Statistics> cacheStatistics() {
+        return matchesCache == null ? List.of() : List.of(matchesCache.statistics());
+    }
+
+    private static Set<JsonNode> hashed(Val array) {
+        var elements = new LinkedHashSet<JsonNode>(array.get().size() * 2);
+        array.get().forEach(elements::add);
+        return elements;
+    }
+
+    /**
+     * @param all true to check if all elements match, false to check if any
+     *            element matches
+     */
+    private Val match(Val array, Val regex, boolean all) {
+        Matcher matcher;
+        try {
+            matcher = patterns.get(regex.getText(), Pattern::compile).matcher("");
+        } catch (PatternSyntaxException e) {
+            return Val.error("Invalid regular expression: %s", e.getMessage());
+        }
+        for (var element : array.get()) {
+            var matches = element.isTextual() && matcher.reset(element.asText()).matches();
+            if (matches != all)
+                return Val.of(matches);
+        }
+        return Val.of(all);
+    }
+
 }
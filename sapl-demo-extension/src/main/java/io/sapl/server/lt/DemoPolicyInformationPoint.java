@@ -21,7 +21,15 @@
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import org.springframework.stereotype.Component;
@@ -31,9 +39,12 @@
 import io.sapl.api.pip.Attribute;
 import io.sapl.api.pip.EnvironmentAttribute;
 import io.sapl.api.pip.PolicyInformationPoint;
+import io.sapl.api.validation.Number;
 import io.sapl.api.validation.Text;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * This is a small custom Policy Information Point for illustrating how to
@@ -58,21 +69,153 @@
  * runtime.
  */
 @PolicyInformationPoint(name = "demo", description = "Some documenting text for the PIP.")
-public class DemoPolicyInformationPoint {
+public class DemoPolicyInformationPoint implements AutoCloseable {
 
     private static final long DEFAULT_POLLING_INTERVAL_MS = 2_000L;
 
     private static final int DEFAULT_TIMEOUT_MS = 1_000;
 
+    private static final int MAX_CONCURRENT_PROBES = 64;
+
+    private static final Duration DNS_TTL = Duration.ofSeconds(30);
+
+    private static final Duration DNS_NEGATIVE_TTL = Duration.ofSeconds(5);
+
+    private static final int DNS_CACHE_SIZE = 10_000;
+
+    private static final Duration TOGGLE_PERIOD = Duration.ofMillis(500);
+
+    private static final Duration DEFAULT_CLOCK_PERIOD = Duration.ofSeconds(1);
+
+    private static final long SCAN_GRANULARITY_MS = 250L;
+
+    private static final int MAX_TCP_SCANNERS = 32;
+
+    /*
+     * All subscriptions to the same host with the same polling interval and
+     * timeout share a single probe loop. Without sharing, 5.000 subscriptions
+     * watching 20 hosts would run 5.000 probe loops instead of 20.
+     */
+    private final Map<ProbeKey, Flux<Boolean>> probeLoops = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeProbeLoops = new AtomicInteger();
+
+    /*
+     * The probes use blocking APIs. They must not run on the threads of the
+     * reactive runtime, which are reserved for non-blocking work. A bounded
+     * elastic scheduler caps the number of concurrently blocked threads.
+     */
+    private final Scheduler probeScheduler;
+
+    private final boolean ownsProbeScheduler;
+
+    /*
+     * Host names are resolved once per time-to-live instead of on every polling
+     * cycle. Concurrent lookups of the same name share one resolution.
+     */
+    private final DnsResolutionCache dnsCache;
+
+    /*
+     * Non-blocking TCP scanners, one per combination of polling interval and
+     * timeout. Each scanner probes all of its watched hosts in one batch per
+     * interval. As both parameters are supplied by policies, they are normalized
+     * to powers of two of 250ms and the number of scanners is limited. A scanner
+     * is closed once its last subscriber cancelled. Guarded by itself.
+     */
+    private final Map<ScanKey, ScannerUsage> tcpScanners = new HashMap<>();
+
+    /*
+     * All subscriptions to the same host and port with the same scanner share a
+     * single watch. Thus, the scanner is retained once per watched host instead
+     * of once per subscription.
+     */
+    private final Map<TcpWatchKey, Flux<Boolean>> tcpWatches = new ConcurrentHashMap<>();
+
+    /*
+     * Toggle and time attributes share one timer per period instead of running a
+     * timer per subscription.
+     */
+    private final SharedTickSource tickSource = new SharedTickSource(Clock.systemUTC());
+
+    /*
+     * The ticks of the shared timers per attribute and period. All subscriptions
+     * of an attribute with the same period share one subscription to the timer.
+     */
+    private final Map<ClockKey, Flux<Instant>> clocks = new ConcurrentHashMap<>();
+
+    /*
+     * Records subscriptions, time to first value, emissions, errors and active
+     * streams per attribute as Micrometer metrics and JFR events.
+     */
+    private final AttributeInstrumentation instrumentation = new AttributeInstrumentation();
+
+    /**
+     * Creates the PIP running its blocking probes on a dedicated bounded elastic
+     * scheduler with at most 64 threads. The threads are created on demand, and
+     * the scheduler is disposed when the PIP is closed.
+     */
+    public DemoPolicyInformationPoint() {
+        this(Schedulers.newBoundedElastic(MAX_CONCURRENT_PROBES, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                "reachability-probe", 60, true), true);
+    }
+
+    /**
+     * @param probeScheduler the scheduler for blocking probes and host name
+     *                       lookups. It is owned by the caller and not disposed
+     *                       when the PIP is closed.
+     */
+    public DemoPolicyInformationPoint(Scheduler probeScheduler) {
+        this(probeScheduler, false);
+    }
+
+    private DemoPolicyInformationPoint(Scheduler probeScheduler, boolean ownsProbeScheduler) {
+        this.probeScheduler     = probeScheduler;
+        this.ownsProbeScheduler = ownsProbeScheduler;
+        this.dnsCache           = new DnsResolutionCache(
+                hostname -> Mono.fromCallable(() -> InetAddress.getByName(hostname)).subscribeOn(probeScheduler),
+                DNS_TTL, DNS_NEGATIVE_TTL, DNS_CACHE_SIZE, Clock.systemUTC());
+    }
+
     /**
      * @return A Flux of Boolean values inverting every 500ms, starting with true.
+     *         The flips of all subscribers happen at the same, shared ticks.
      */
     @EnvironmentAttribute(name = "toggle", docs = "Periodically turns from true to false.")
     public Flux<Val> toggle() {
-        return Flux
-                .concat(Flux.just(Boolean.TRUE),
-                        Flux.just(Boolean.TRUE, Boolean.FALSE).repeat().delayElements(Duration.ofMillis(500)))
-                .map(Val::of);
+        return instrumentation.instrument("demo.toggle",
+                clock("demo.toggle", TOGGLE_PERIOD).index().map(tick -> Val.of(tick.getT1() % 2 == 0)));
+    }
+
+    /**
+     * This method implements the attribute <demo.now>.
+     *
+     * In contrast to the time PIP, all subscriptions share a single timer which is
+     * aligned to full seconds.
+     *
+     * @return A Flux of the current time in ISO-8601 format, updated every second.
+     */
+    @EnvironmentAttribute(name = "now", docs = "The current time in ISO-8601 format, updated at every full second. All subscriptions share a single timer.")
+    public Flux<Val> now() {
+        return instrumentation.instrument("demo.now",
+                clock("demo.now", DEFAULT_CLOCK_PERIOD).map(tick -> Val.of(tick.toString())));
+    }
+
+    /**
+     * This method implements the attribute <demo.now(updateIntervalMs)>.
+     *
+     * @param updateIntervalParameter a numeric Val providing the interval in
+     *                                milliseconds between two updates.
+     * @return A Flux of the current time in ISO-8601 format.
+     */
+    @EnvironmentAttribute(name = "now", docs = "The current time in ISO-8601 format. Usage: <demo.now(60000)> updates at every full minute. All subscriptions with the same interval share a single timer.")
+    public Flux<Val> now(@Number Val updateIntervalParameter) {
+        var updateIntervalMs = updateIntervalParameter.get().asLong();
+        if (updateIntervalMs < 1L)
+            return Flux.error(new PolicyEvaluationException(
+                    "The update interval of the time must be at least 1ms. The interval was set to %dms",
+                    updateIntervalMs));
+        return instrumentation.instrument("demo.now",
+                clock("demo.now", Duration.ofMillis(updateIntervalMs)).map(tick -> Val.of(tick.toString())));
     }
 
     /**
@@ -126,7 +269,8 @@ public Flux<Val> reachable(@Text Val leftHandHostnameParameter, Val pollingInter
             return Flux.error(new PolicyEvaluationException(
                     "When checking for reachability of a host, the timeout must be smaller than the polling interval. The timout was %dms and the polling interval was set to %dms",
                     timeoutMs, pollingIntervalMs));
-        return reachable(hostname, pollingIntervalMs, timeoutMs).map(Val::of);
+        return instrumentation.instrument("demo.reachable",
+                reachable(hostname, pollingIntervalMs, timeoutMs).map(Val::of));
     }
 
     /**
@@ -141,13 +285,148 @@ public Flux<Val> reachable(@Text Val leftHandHostnameParameter, Val pollingInter
     @Attribute(name = "reachable", docs = "Checks if the internet address is reachable within a given timout. Usage: \"example.com\".<demo.reachable> checks if the address returns a package within 1000ms and repeats this pinging action every 2000ms. The timeout must be smaller than the repetition interval.")
     public Flux<Val> reachable(@Text Val leftHandHostnameParameter) {
         var hostname = leftHandHostnameParameter.getText();
-        return reachable(hostname, DEFAULT_POLLING_INTERVAL_MS, DEFAULT_TIMEOUT_MS).map(Val::of);
+        return instrumentation.instrument("demo.reachable",
+                reachable(hostname, DEFAULT_POLLING_INTERVAL_MS, DEFAULT_TIMEOUT_MS).map(Val::of));
     }
 
     /**
-     * This function first resolves the host name and then repeatedly checks
-     * availability of the host. This method only emits an event if the availability
-     * status changes.
+     * This method implements the attribute
+     * "host.name".<demo.tcpReachable(port,pollingInterval,timeout)>.
+     *
+     * In contrast to the reachable attribute, this attribute does not block a
+     * thread per probe. It checks if a TCP connection to the given port can be
+     * established using non-blocking I/O. All hosts watched with the same polling
+     * interval and timeout are probed in a single batch per interval.
+     *
+     * @param leftHandHostnameParameter a textual Val containing a host name, either
+     *                                  in number notation (e.g. "192.168.1.2") or
+     *                                  as domain name (e.g. "example.com").
+     * @param portParameter             a numeric Val providing the TCP port to
+     *                                  connect to.
+     * @param pollingIntervalParameter  a numeric Val providing the interval in
+     *                                  milliseconds in which host is probed. Must
+     *                                  be larger than timeoutMsParameter.
+     * @param timeoutMsParameter        a numeric Val providing the timeout in
+     *                                  milliseconds for establishing the
+     *                                  connection.
+     * @return A boolean Flux indication the host's availability.
+     */
+    @Attribute(name = "tcpReachable", docs = "Checks if a TCP connection to the given port of the internet address can be established within a given timeout. Usage: \"example.com\".<demo.tcpReachable(443,5000,1000)> tries to connect to port 443 every 5000ms and waits up to 1000ms for the connection. The timeout must be smaller than the repetition interval.")
+    public Flux<Val> tcpReachable(@Text Val leftHandHostnameParameter, Val portParameter,
+            Val pollingIntervalParameter, Val timeoutMsParameter) {
+        var hostname          = leftHandHostnameParameter.getText();
+        var port              = portParameter.get().asInt();
+        var timeoutMs         = timeoutMsParameter.get().asLong();
+        var pollingIntervalMs = pollingIntervalParameter.get().asLong();
+        if (pollingIntervalMs < timeoutMs)
+            return Flux.error(new PolicyEvaluationException(
+                    "When checking for reachability of a host, the timeout must be smaller than the polling interval. The timout was %dms and the polling interval was set to %dms",
+                    timeoutMs, pollingIntervalMs));
+        var key = new TcpWatchKey(ScanKey.normalized(pollingIntervalMs, timeoutMs), hostname, port);
+        return instrumentation.instrument("demo.tcpReachable",
+                Flux.defer(() -> tcpWatches.computeIfAbsent(key, this::tcpWatch)).map(Val::of));
+    }
+
+    /**
+     * @return the number of TCP scanners currently running
+     */
+    public int activeTcpScanners() {
+        synchronized (tcpScanners) {
+            return tcpScanners.size();
+        }
+    }
+
+    /**
+     * @return the number of timers currently running for toggle and time attributes
+     */
+    public int activeClockTimers() {
+        return tickSource.activeTimers();
+    }
+
+    /**
+     * @return the metrics of the attributes of this PIP
+     */
+    public List<AttributeInstrumentation.Statistics> attributeStatistics() {
+        return instrumentation.statistics();
+    }
+
+    /**
+     * @return the number of probe loops currently running
+     */
+    public int activeProbeLoops() {
+        return activeProbeLoops.get();
+    }
+
+    /**
+     * Stops the TCP scanners and the own probe scheduler. Spring calls this
+     * method when the application context is closed, as the PIP is
+     * AutoCloseable. Thus, the PIP does not depend on Spring at runtime.
+     */
+    @Override
+    public void close() {
+        synchronized (tcpScanners) {
+            tcpScanners.values().forEach(usage -> usage.scanner.close());
+            tcpScanners.clear();
+        }
+        if (ownsProbeScheduler)
+            probeScheduler.dispose();
+    }
+
+    /**
+     * @return the scanner for the key, or null if the limit of scanners is
+     *         reached
+     */
+    private TcpReachabilityScanner retainScanner(ScanKey key) {
+        synchronized (tcpScanners) {
+            var usage = tcpScanners.get(key);
+            if (usage == null) {
+                if (tcpScanners.size() >= MAX_TCP_SCANNERS)
+                    return null;
+                usage = new ScannerUsage(new TcpReachabilityScanner(Duration.ofMillis(key.pollingIntervalMs()),
+                        Duration.ofMillis(key.timeoutMs()), dnsCache::resolve));
+                tcpScanners.put(key, usage);
+            }
+            usage.subscribers++;
+            return usage.scanner;
+        }
+    }
+
+    private void releaseScanner(ScanKey key) {
+        synchronized (tcpScanners) {
+            var usage = tcpScanners.get(key);
+            if (usage == null || --usage.subscribers > 0)
+                return;
+            tcpScanners.remove(key);
+            usage.scanner.close();
+        }
+    }
+
+    /**
+     * Watches the host with the scanner for the polling interval and timeout. The
+     * watch is shared by all subscribers and released once the last subscriber
+     * cancels.
+     *
+     * @param key the scanner, host name and port
+     * @return A boolean Flux indication the host's availability, shared between all
+     *         subscribers.
+     */
+    private Flux<Boolean> tcpWatch(TcpWatchKey key) {
+        var watch = new AtomicReference<Flux<Boolean>>();
+        watch.set(instrumentation.upstream("demo.tcpReachable", Flux.defer(() -> {
+            var scanner = retainScanner(key.scanKey());
+            if (scanner == null)
+                return Flux.error(new PolicyEvaluationException(
+                        "Too many distinct combinations of polling interval and timeout are watched. The limit is %d.",
+                        MAX_TCP_SCANNERS));
+            return scanner.watch(key.hostname(), key.port()).doFinally(signal -> releaseScanner(key.scanKey()));
+        })).doFinally(signal -> tcpWatches.remove(key, watch.get())).replay(1).refCount());
+        return watch.get();
+    }
+
+    /**
+     * Returns the shared probe loop for the host, polling interval and timeout.
+     * The loop is started with the first subscriber, replays the last status to
+     * later subscribers and is stopped once the last subscriber cancels.
      * 
      * @param hostname          the host name to resolve
      * @param pollingIntervalMs the polling time in ms
@@ -155,24 +434,47 @@ public Flux<Val> reachable(@Text Val leftHandHostnameParameter) {
      * @return A boolean Flux indication the host's availability.
      */
     private Flux<Boolean> reachable(String hostname, long pollingIntervalMs, int timeout) {
-        return dnsLookup(hostname).repeat().delayElements(Duration.ofMillis(pollingIntervalMs))
-                .flatMap(reachable(timeout)).distinctUntilChanged();
+        var key = new ProbeKey(hostname, pollingIntervalMs, timeout);
+        return Flux.defer(() -> probeLoops.computeIfAbsent(key, this::probeLoop));
+    }
+
+    /**
+     * This function first resolves the host name and then repeatedly checks
+     * availability of the host. This method only emits an event if the availability
+     * status changes.
+     * 
+     * @param key the host name, polling interval and timeout
+     * @return A boolean Flux indication the host's availability, shared between all
+     *         subscribers.
+     */
+    private Flux<Boolean> probeLoop(ProbeKey key) {
+        var loop = new AtomicReference<Flux<Boolean>>();
+        loop.set(instrumentation.upstream("demo.reachable",
+                dnsLookup(key.hostname()).repeat().delayElements(Duration.ofMillis(key.pollingIntervalMs()))
+                        .concatMap(reachable(key.timeout())).distinctUntilChanged())
+                .doOnSubscribe(subscription -> activeProbeLoops.incrementAndGet()).doFinally(signal -> {
+                    activeProbeLoops.decrementAndGet();
+                    probeLoops.remove(key, loop.get());
+                }).replay(1).refCount());
+        return loop.get();
     }
 
     /**
-     * Wraps the blocking getByName() method of InetAddress in a Mono.
+     * Resolves the host name using the shared DNS cache.
      *
-     * Usually it is not a good idea to use blocking APIs. Sometimes there are no
-     * asynchronous implementations available and one has no resources to implement
-     * an asynchronous replacement. There generally are asynchronous libraries
+     * The cache wraps the blocking getByName() method of InetAddress. Usually it is
+     * not a good idea to use blocking APIs. Sometimes there are no asynchronous
+     * implementations available and one has no resources to implement an
+     * asynchronous replacement. There generally are asynchronous libraries
      * available. However, as this is just a tutorial project we omit additional
-     * dependencies for simplicity's sake.
+     * dependencies for simplicity's sake. The cache makes sure that the blocking
+     * call happens at most once per time-to-live and host name.
      * 
      * @param hostname the hostname to resolve.
      * @return the resolved hostname
      */
     private Mono<InetAddress> dnsLookup(String hostname) {
-        return Mono.fromCallable(() -> InetAddress.getByName(hostname));
+        return dnsCache.resolve(hostname);
     }
 
     /**
@@ -193,7 +495,64 @@ private Function<InetAddress, Mono<Boolean>> reachable(int timeout) {
             } catch (IOException e) {
                 return Boolean.FALSE;
             }
-        });
+        }).subscribeOn(probeScheduler);
+    }
+
+    /**
+     * Starts with the time of the last tick, so that subscribers do not have to
+     * wait for the next tick, followed by the ticks of the shared timer.
+     *
+     * @param attributeName the attribute the ticks are counted for
+     * @param period        the time between two ticks
+     * @return the aligned current time
+     */
+    private Flux<Instant> clock(String attributeName, Duration period) {
+        var key = new ClockKey(attributeName, period);
+        return Flux.concat(Mono.fromSupplier(() -> tickSource.alignedNow(period)),
+                Flux.defer(() -> clocks.computeIfAbsent(key, this::sharedTicks)));
+    }
+
+    private Flux<Instant> sharedTicks(ClockKey key) {
+        var ticks = new AtomicReference<Flux<Instant>>();
+        ticks.set(instrumentation.upstream(key.attributeName(), tickSource.ticks(key.period()))
+                .doFinally(signal -> clocks.remove(key, ticks.get())).publish().refCount());
+        return ticks.get();
+    }
+
+    private record ProbeKey(String hostname, long pollingIntervalMs, int timeout) {
+    }
+
+    private record ClockKey(String attributeName, Duration period) {
+    }
+
+    private record TcpWatchKey(ScanKey scanKey, String hostname, int port) {
+    }
+
+    /**
+     * The polling interval is rounded down and the timeout rounded up to a power
+     * of two of the scan granularity. The timeout never exceeds the interval.
+     */
+    private record ScanKey(long pollingIntervalMs, long timeoutMs) {
+
+        static ScanKey normalized(long pollingIntervalMs, long timeoutMs) {
+            var interval = Long.highestOneBit(Math.max(1L, pollingIntervalMs / SCAN_GRANULARITY_MS));
+            var units    = Math.max(1L, (timeoutMs + SCAN_GRANULARITY_MS - 1L) / SCAN_GRANULARITY_MS);
+            var timeout  = Long.highestOneBit(units) == units ? units : Long.highestOneBit(units) << 1;
+            return new ScanKey(interval * SCAN_GRANULARITY_MS, Math.min(timeout, interval) * SCAN_GRANULARITY_MS);
+        }
+
+    }
+
+    private static class ScannerUsage {
+
+        private final TcpReachabilityScanner scanner;
+
+        private int subscribers;
+
+        ScannerUsage(TcpReachabilityScanner scanner) {
+            this.scanner = scanner;
+        }
+
     }
 
 }
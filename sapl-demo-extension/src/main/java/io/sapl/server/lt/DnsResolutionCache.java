@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A shared, asynchronous cache for host name resolution, usable by any PIP.
+ *
+ * Successful resolutions are cached for a time-to-live. Failed resolutions are
+ * cached for a separate, usually shorter, time-to-live (negative caching), so
+ * that unknown hosts do not hit the resolver on every polling cycle. Concurrent
+ * lookups of the same host name while a resolution is in progress share this
+ * resolution (request coalescing). The number of cached host names is bounded,
+ * the least recently used names are evicted first.
+ */
+public class DnsResolutionCache {
+
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(5);
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final Function<String, Mono<InetAddress>> resolver;
+
+    private final long ttlMs;
+
+    private final long negativeTtlMs;
+
+    private final int maximumSize;
+
+    private final Clock clock;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache with default settings, resolving names with the blocking
+     * JDK resolver on the bounded elastic scheduler.
+     */
+    public DnsResolutionCache() {
+        this(hostname -> Mono.fromCallable(() -> InetAddress.getByName(hostname))
+                .subscribeOn(Schedulers.boundedElastic()), DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAXIMUM_SIZE,
+                Clock.systemUTC());
+    }
+
+    /**
+     * @param resolver    resolves a host name. Errors and empty results are
+     *                    considered failed resolutions.
+     * @param ttl         the time successful resolutions are cached
+     * @param negativeTtl the time failed resolutions are cached
+     * @param maximumSize the maximal number of cached host names
+     * @param clock       the clock used to determine expiry
+     */
+    public DnsResolutionCache(Function<String, Mono<InetAddress>> resolver, Duration ttl, Duration negativeTtl,
+            int maximumSize, Clock clock) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("The maximum size of the DNS cache must be positive.");
+        this.resolver      = resolver;
+        this.ttlMs         = ttl.toMillis();
+        this.negativeTtlMs = negativeTtl.toMillis();
+        this.maximumSize   = maximumSize;
+        this.clock         = clock;
+    }
+
+    /**
+     * @param hostname the host name to resolve
+     * @return the address of the host, or an UnknownHostException if the host
+     *         cannot be resolved
+     */
+    public Mono<InetAddress> resolve(String hostname) {
+        return Mono.defer(() -> lookup(hostname).result());
+    }
+
+    /**
+     * @return a snapshot of the cache metrics
+     */
+    public Statistics statistics() {
+        synchronized (entries) {
+            return new Statistics(hits.sum(), coalesced.sum(), misses.sum(), evictions.sum(), entries.size());
+        }
+    }
+
+    private Entry lookup(String hostname) {
+        var now = clock.millis();
+        synchronized (entries) {
+            var entry = entries.get(hostname);
+            if (entry != null && now < entry.expiresAt) {
+                if (entry.expiresAt == Long.MAX_VALUE)
+                    coalesced.increment();
+                else
+                    hits.increment();
+                return entry;
+            }
+            misses.increment();
+            var newEntry = new Entry();
+            newEntry.result = resolver.apply(hostname)
+                    .switchIfEmpty(Mono.error(() -> new UnknownHostException(hostname)))
+                    .doOnSuccess(address -> newEntry.expiresAt = clock.millis() + ttlMs)
+                    .doOnError(error -> newEntry.expiresAt = clock.millis() + negativeTtlMs).cache();
+            entries.put(hostname, newEntry);
+            var eldest = entries.entrySet().iterator();
+            while (entries.size() > maximumSize) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+            return newEntry;
+        }
+    }
+
+    /**
+     * A cached resolution. While the resolution is in progress, the entry does not
+     * expire.
+     */
+    private static class Entry {
+
+        private Mono<InetAddress> result;
+
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Mono<InetAddress> result() {
+            return result;
+        }
+
+    }
+
+    /**
+     * Snapshot of the cache metrics.
+     *
+     * @param hits      lookups answered from a completed resolution
+     * @param coalesced lookups joining a resolution in progress
+     * @param misses    lookups starting a new resolution
+     * @param evictions host names evicted due to the size limit
+     * @param size      current number of cached host names
+     */
+    public record Statistics(long hits, long coalesced, long misses, long evictions, int size) {
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.sapl.api.interpreter.Val;
+
+/**
+ * An opt-in memoization cache for a single function of a function library.
+ *
+ * SAPL functions must not have side effects. Thus, a function always returns
+ * the same result for the same arguments, and results of expensive functions
+ * can be reused. A function opts in by routing its implementation through
+ * {@link #apply(Function, Val...)}. A lookup hashes the argument values, which
+ * may cost more than a trivial function itself. Only functions which are
+ * considerably more expensive, e.g., compiling a regular expression, should
+ * opt in.
+ *
+ * The cache is a concurrent Caffeine cache, so that lookups of concurrent
+ * policy evaluations do not block each other. It is bounded by a weight, i.e.,
+ * the combined length of the JSON representation of the arguments and results.
+ * The weight is only computed when a result is stored. If the bound is
+ * exceeded, rarely used entries are evicted. Errors are never cached.
+ */
+public class FunctionResultCache {
+
+    private final String name;
+
+    private final Cache<Object, Val> results;
+
+    /**
+     * @param name          the name of the function, used for reporting
+     * @param maximumWeight the maximal combined JSON length of cached arguments
+     *                      and results
+     */
+    public FunctionResultCache(String name, long maximumWeight) {
+        if (maximumWeight < 1)
+            throw new IllegalArgumentException("The bound of the function result cache must be positive.");
+        this.name    = name;
+        this.results = Caffeine.newBuilder().maximumWeight(maximumWeight)
+                .weigher(FunctionResultCache::weigh).recordStats().build();
+    }
+
+    /**
+     * Returns the cached result for the arguments or evaluates the function.
+     *
+     * @param function  the function implementation
+     * @param arguments the arguments of the function
+     * @return the result of the function
+     */
+    public Val apply(Function<Val[], Val> function, Val... arguments) {
+        var key    = keyOf(arguments);
+        var cached = results.getIfPresent(key);
+        if (cached != null)
+            return cached;
+
+        var result = function.apply(arguments);
+        if (!result.isError())
+            results.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return a snapshot of the cache metrics
+     */
+    public Statistics statistics() {
+        var stats  = results.stats();
+        var weight = results.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+        return new Statistics(name, stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                results.estimatedSize(), weight);
+    }
+
+    /**
+     * Performs pending maintenance, e.g., evictions, right away.
+     */
+    void cleanUp() {
+        results.cleanUp();
+    }
+
+    /*
+     * JsonNode implements equals() and hashCode() structurally. A single argument
+     * is used as the key itself, several arguments are wrapped in a list.
+     */
+    private static Object keyOf(Val... arguments) {
+        if (arguments.length == 1)
+            return keyOf(arguments[0]);
+        return Arrays.stream(arguments).map(FunctionResultCache::keyOf).toList();
+    }
+
+    private static Object keyOf(Val value) {
+        if (value.isError())
+            return List.of("error", String.valueOf(value.getMessage()));
+        if (value.isUndefined())
+            return List.of("undefined");
+        return value.get();
+    }
+
+    private static int weigh(Object key, Val result) {
+        return (int) Math.min(Integer.MAX_VALUE, weightOfKey(key) + weightOf(result));
+    }
+
+    private static long weightOfKey(Object key) {
+        if (key instanceof List<?> values)
+            return values.stream().mapToLong(FunctionResultCache::weightOfKey).sum();
+        return key.toString().length();
+    }
+
+    private static long weightOf(Val value) {
+        return value.isDefined() ? value.get().toString().length() : 1L;
+    }
+
+    /**
+     * Snapshot of the cache metrics.
+     *
+     * @param name      the name of the function
+     * @param hits      invocations answered from the cache
+     * @param misses    invocations evaluating the function
+     * @param evictions results evicted due to the bound
+     * @param size      approximate number of cached results
+     * @param weight    current combined weight of cached results
+     */
+    public record Statistics(String name, long hits, long misses, long evictions, long size, long weight) {
+
+        /**
+         * @return the ratio of hits to all invocations
+         */
+        public double hitRate() {
+            var invocations = hits + misses;
+            return invocations == 0L ? 0.0D : (double) hits / invocations;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * The Micrometer meters of one attribute. All references to Micrometer are
+ * confined to this class, which is only loaded by the AttributeInstrumentation
+ * if Micrometer is on the class path.
+ */
+final class MicrometerAttributeMeters {
+
+    /*
+     * A gauge is registered once per registry and attribute. Later registrations
+     * return the first gauge, bound to the counter of the first instrumentation.
+     * Thus, the counters of the gauges are shared by all instrumentations. The
+     * gauges reference them strongly, so they are not collected while registered.
+     */
+    private static final Map<GaugeKey, AtomicInteger> ACTIVE_STREAMS = new ConcurrentHashMap<>();
+
+    private final Counter subscriptions;
+
+    private final Timer firstValue;
+
+    private final Counter values;
+
+    private final Counter errors;
+
+    private final AtomicInteger active;
+
+    private MicrometerAttributeMeters(Counter subscriptions, Timer firstValue, Counter values, Counter errors,
+            AtomicInteger active) {
+        this.subscriptions = subscriptions;
+        this.firstValue    = firstValue;
+        this.values        = values;
+        this.errors        = errors;
+        this.active        = active;
+    }
+
+    static MeterRegistry globalRegistry() {
+        return Metrics.globalRegistry;
+    }
+
+    static MicrometerAttributeMeters register(MeterRegistry registry, String attributeName) {
+        var active = ACTIVE_STREAMS.computeIfAbsent(new GaugeKey(registry, attributeName), key -> {
+            var streams = new AtomicInteger();
+            Gauge.builder("sapl.attribute.active", streams, AtomicInteger::get).tag("attribute", attributeName)
+                    .description("Running upstream streams of the attribute").strongReference(true)
+                    .register(registry);
+            return streams;
+        });
+        return new MicrometerAttributeMeters(
+                Counter.builder("sapl.attribute.subscriptions").tag("attribute", attributeName)
+                        .description("Subscriptions to the attribute").register(registry),
+                Timer.builder("sapl.attribute.first.value").tag("attribute", attributeName)
+                        .description("Time from subscription to the first value of the attribute")
+                        .register(registry),
+                Counter.builder("sapl.attribute.values").tag("attribute", attributeName)
+                        .description("Values emitted by the attribute").register(registry),
+                Counter.builder("sapl.attribute.errors").tag("attribute", attributeName)
+                        .description("Errors emitted by the attribute").register(registry),
+                active);
+    }
+
+    AtomicInteger active() {
+        return active;
+    }
+
+    void subscribed() {
+        subscriptions.increment();
+    }
+
+    void emitted(boolean error) {
+        values.increment();
+        if (error)
+            errors.increment();
+    }
+
+    void failed() {
+        errors.increment();
+    }
+
+    void firstValue(long nanos) {
+        firstValue.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private record GaugeKey(MeterRegistry registry, String attributeName) {
+    }
+
+}
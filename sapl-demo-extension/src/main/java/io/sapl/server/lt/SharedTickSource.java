@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A hot source of periodic ticks shared by all subscribers.
+ *
+ * Attributes like toggles or the current time typically create one timer per
+ * subscription. With 100.000 subscriptions, this means 100.000 scheduled
+ * tasks. This source runs at most one timer per period, no matter how many
+ * subscribers there are. The ticks are aligned to wall-clock boundaries, e.g.,
+ * with a period of one second, ticks happen at full seconds. Thus, all
+ * subscribers observe the same time in the same moment.
+ *
+ * A timer is started with the first subscriber of its period and stopped when
+ * the last subscriber cancels.
+ */
+public class SharedTickSource {
+
+    private final Clock clock;
+
+    private final Scheduler scheduler;
+
+    private final Map<Duration, Flux<Instant>> ticks = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeTimers = new AtomicInteger();
+
+    /**
+     * @param clock the clock to align the ticks to
+     */
+    public SharedTickSource(Clock clock) {
+        this(clock, Schedulers.parallel());
+    }
+
+    /**
+     * @param clock     the clock to align the ticks to
+     * @param scheduler the scheduler running the timers
+     */
+    public SharedTickSource(Clock clock, Scheduler scheduler) {
+        this.clock     = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param period the time between two ticks, at least one millisecond
+     * @return a hot Flux emitting the aligned time of each tick
+     */
+    public Flux<Instant> ticks(Duration period) {
+        if (period.toMillis() < 1L)
+            return Flux.error(new IllegalArgumentException("The period of ticks must be at least one millisecond."));
+        return Flux.defer(() -> ticks.computeIfAbsent(period, this::createTicks));
+    }
+
+    /**
+     * @param period the time between two ticks
+     * @return the current time aligned to the period, i.e., the time of the last
+     *         tick
+     */
+    public Instant alignedNow(Duration period) {
+        var periodMs = period.toMillis();
+        var now      = clock.millis();
+        return Instant.ofEpochMilli(now - Math.floorMod(now, periodMs));
+    }
+
+    /**
+     * @return the number of timers currently scheduled
+     */
+    public int activeTimers() {
+        return activeTimers.get();
+    }
+
+    private Flux<Instant> createTicks(Duration period) {
+        var periodMs = period.toMillis();
+        var shared   = new AtomicReference<Flux<Instant>>();
+        shared.set(Flux.defer(() -> {
+            var initialDelay = periodMs - Math.floorMod(clock.millis(), periodMs);
+            return Flux.interval(Duration.ofMillis(initialDelay), period, scheduler);
+        }).onBackpressureDrop().map(tick -> {
+            /*
+             * Timers may fire slightly early or late. Rounding to the closest boundary
+             * yields the time of the tick intended.
+             */
+            var now = clock.millis();
+            return Instant.ofEpochMilli(Math.round((double) now / periodMs) * periodMs);
+        }).doOnSubscribe(subscription -> activeTimers.incrementAndGet()).doFinally(signal -> {
+            activeTimers.decrementAndGet();
+            ticks.remove(period, shared.get());
+        }).publish().refCount());
+        return shared.get();
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A non-blocking reachability scanner based on TCP connection attempts.
+ *
+ * Instead of occupying a thread for each probe, the scanner uses NIO
+ * asynchronous socket channels. A single timer triggers a scan of all watched
+ * hosts per polling interval. The results are fanned out to all subscribers
+ * watching the respective host. The timer only runs while at least one host is
+ * watched.
+ *
+ * A host is considered reachable, if a TCP connection to the given port can be
+ * established within the timeout. Host names are resolved by the given
+ * resolver, so that the scanner can be tested against loopback listeners
+ * without any network access.
+ */
+public class TcpReachabilityScanner implements AutoCloseable {
+
+    private static final int MAX_CONCURRENT_CONNECTS = 1_024;
+
+    private final Duration pollingInterval;
+
+    private final Duration timeout;
+
+    private final Function<String, Mono<InetAddress>> resolver;
+
+    private final Map<HostAndPort, Watch> watches = new HashMap<>();
+
+    private Disposable scanLoop;
+
+    /**
+     * Creates a scanner resolving host names with the blocking JDK resolver on
+     * the bounded elastic scheduler.
+     *
+     * @param pollingInterval the interval between two scans
+     * @param timeout         the time to wait for a connection to be established
+     */
+    public TcpReachabilityScanner(Duration pollingInterval, Duration timeout) {
+        this(pollingInterval, timeout,
+                hostname -> Mono.fromCallable(() -> InetAddress.getByName(hostname))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /**
+     * @param pollingInterval the interval between two scans
+     * @param timeout         the time to wait for a connection to be established
+     * @param resolver        resolves host names to addresses
+     */
+    public TcpReachabilityScanner(Duration pollingInterval, Duration timeout,
+            Function<String, Mono<InetAddress>> resolver) {
+        if (pollingInterval.compareTo(timeout) < 0)
+            throw new IllegalArgumentException("The timeout must be smaller than the polling interval.");
+        this.pollingInterval = pollingInterval;
+        this.timeout         = timeout;
+        this.resolver        = resolver;
+    }
+
+    /**
+     * @param hostname the host to watch
+     * @param port     the TCP port to connect to
+     * @return a Flux emitting the reachability of the host after each scan in
+     *         which it changed. Subscribers joining later immediately receive the
+     *         last known status.
+     */
+    public Flux<Boolean> watch(String hostname, int port) {
+        var key = new HostAndPort(hostname, port);
+        return Flux.defer(() -> retain(key).sink.asFlux()).distinctUntilChanged()
+                .doFinally(signal -> release(key));
+    }
+
+    /**
+     * @return the number of distinct hosts currently watched
+     */
+    public synchronized int watchedHosts() {
+        return watches.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        stopScanLoop();
+        watches.values().forEach(watch -> watch.sink.tryEmitComplete());
+        watches.clear();
+    }
+
+    private synchronized Watch retain(HostAndPort key) {
+        var watch = watches.computeIfAbsent(key, Watch::new);
+        watch.subscribers++;
+        if (scanLoop == null)
+            scanLoop = Flux.interval(Duration.ZERO, pollingInterval).onBackpressureDrop().concatMap(tick -> scan())
+                    .subscribe();
+        return watch;
+    }
+
+    private synchronized void release(HostAndPort key) {
+        var watch = watches.get(key);
+        if (watch == null || --watch.subscribers > 0)
+            return;
+        watches.remove(key);
+        if (watches.isEmpty())
+            stopScanLoop();
+    }
+
+    private void stopScanLoop() {
+        if (scanLoop != null) {
+            scanLoop.dispose();
+            scanLoop = null;
+        }
+    }
+
+    private synchronized List<Watch> snapshot() {
+        return List.copyOf(watches.values());
+    }
+
+    private Mono<Void> scan() {
+        return Flux.fromIterable(snapshot())
+                .flatMap(watch -> resolver.apply(watch.key.hostname())
+                        .flatMap(address -> connect(new InetSocketAddress(address, watch.key.port())))
+                        .onErrorReturn(Boolean.FALSE).defaultIfEmpty(Boolean.FALSE)
+                        .doOnNext(watch.sink::tryEmitNext), MAX_CONCURRENT_CONNECTS)
+                .then();
+    }
+
+    private Mono<Boolean> connect(InetSocketAddress address) {
+        return Mono.<Boolean>create(sink -> {
+            AsynchronousSocketChannel channel;
+            try {
+                channel = AsynchronousSocketChannel.open();
+            } catch (IOException e) {
+                sink.success(Boolean.FALSE);
+                return;
+            }
+            sink.onDispose(() -> closeQuietly(channel));
+            channel.connect(address, null, new CompletionHandler<Void, Void>() {
+                @Override
+                public void completed(Void result, Void attachment) {
+                    sink.success(Boolean.TRUE);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    sink.success(Boolean.FALSE);
+                }
+            });
+        }).timeout(timeout, Mono.just(Boolean.FALSE));
+    }
+
+    private static void closeQuietly(AsynchronousSocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to do, the probe is already finished
+        }
+    }
+
+    private record HostAndPort(String hostname, int port) {
+    }
+
+    private static class Watch {
+
+        private final HostAndPort key;
+
+        private final Sinks.Many<Boolean> sink = Sinks.many().replay().latest();
+
+        private int subscribers;
+
+        Watch(HostAndPort key) {
+            this.key = key;
+        }
+
+    }
+
+}
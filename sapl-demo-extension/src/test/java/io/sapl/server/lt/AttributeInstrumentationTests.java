@@ -0,0 +1,81 @@
+package io.sapl.server.lt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sapl.api.interpreter.Val;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+class AttributeInstrumentationTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private double activeGauge(String attributeName) {
+        return registry.get("sapl.attribute.active").tag("attribute", attributeName).gauge().value();
+    }
+
+    @Test
+    void whenSharedUpstreamHasManySubscribers_thenOneStreamIsActive() {
+        var instrumentation = new AttributeInstrumentation(registry);
+        var shared          = instrumentation.upstream("test.shared", Flux.<Val>never()).publish().refCount();
+        var subscriptions   = List.of(instrumentation.instrument("test.shared", shared).subscribe(),
+                instrumentation.instrument("test.shared", shared).subscribe(),
+                instrumentation.instrument("test.shared", shared).subscribe());
+
+        assertEquals(1.0D, activeGauge("test.shared"));
+        assertEquals(3L, instrumentation.statistics().get(0).subscriptions());
+        assertEquals(1, instrumentation.statistics().get(0).active());
+
+        subscriptions.forEach(Disposable::dispose);
+        assertEquals(0.0D, activeGauge("test.shared"));
+    }
+
+    @Test
+    void whenTwoInstrumentationsPublishSameAttribute_thenGaugeCountsBoth() {
+        var first  = new AttributeInstrumentation(registry);
+        var second = new AttributeInstrumentation(registry);
+        var one    = first.upstream("test.attribute", Flux.<Val>never()).subscribe();
+        var other  = second.upstream("test.attribute", Flux.<Val>never()).subscribe();
+
+        assertEquals(2.0D, activeGauge("test.attribute"));
+        assertEquals(1, registry.find("sapl.attribute.active").gauges().size());
+
+        one.dispose();
+        assertEquals(1.0D, activeGauge("test.attribute"));
+        other.dispose();
+        assertEquals(0.0D, activeGauge("test.attribute"));
+    }
+
+    @Test
+    void whenUpstreamCompletes_thenItIsNoLongerActive() {
+        var instrumentation = new AttributeInstrumentation(registry);
+        var values          = instrumentation
+                .instrument("test.finite", instrumentation.upstream("test.finite", Flux.just(Val.TRUE, Val.FALSE)))
+                .collectList().block();
+
+        assertEquals(2, values.size());
+        assertEquals(0.0D, activeGauge("test.finite"));
+        assertEquals(2L, instrumentation.statistics().get(0).values());
+    }
+
+    @Test
+    void whenNoRegistry_thenStatisticsAreRecordedWithoutPublishing() {
+        var instrumentation = new AttributeInstrumentation(null);
+        var values          = instrumentation
+                .instrument("test.local", instrumentation.upstream("test.local", Flux.just(Val.TRUE, Val.FALSE)))
+                .collectList().block();
+
+        assertEquals(2, values.size());
+        assertEquals(1L, instrumentation.statistics().get(0).subscriptions());
+        assertEquals(2L, instrumentation.statistics().get(0).values());
+        assertEquals(0, instrumentation.statistics().get(0).active());
+        assertNull(registry.find("sapl.attribute.values").tag("attribute", "test.local").counter());
+    }
+
+}
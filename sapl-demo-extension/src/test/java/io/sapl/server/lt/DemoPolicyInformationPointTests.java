@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.interpreter.Val;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+class DemoPolicyInformationPointTests {
+
+    private static final Val LOOPBACK = Val.of(InetAddress.getLoopbackAddress().getHostAddress());
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final DemoPolicyInformationPoint pip = new DemoPolicyInformationPoint();
+
+    @AfterEach
+    void closePip() {
+        pip.close();
+    }
+
+    @Test
+    void whenPipWithInjectedSchedulerIsClosed_thenSchedulerIsNotDisposed() {
+        var scheduler = Schedulers.newBoundedElastic(1, 1, "test-probe");
+        try {
+            new DemoPolicyInformationPoint(scheduler).close();
+            assertFalse(scheduler.isDisposed());
+        } finally {
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void whenSubscribingToToggle_thenFirstValueIsTrueAndThenAlternates() {
+        var values = pip.toggle().take(3).map(Val::getBoolean).collectList().block(WAIT);
+        assertEquals(List.of(true, false, true), values);
+    }
+
+    @Test
+    void whenLoopbackPortIsListening_thenTcpReachableIsTrue() throws IOException {
+        try (var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var reachable = tcpReachable(listener.getLocalPort(), 1_000L, 500L).blockFirst(WAIT);
+            assertTrue(reachable.getBoolean());
+        }
+    }
+
+    @Test
+    void whenLastSubscriberLeaves_thenScannerIsClosed() throws IOException {
+        var port   = TcpReachabilityScannerTests.closedPort();
+        var first  = tcpReachable(port, 1_000L, 500L).subscribe();
+        var second = tcpReachable(port, 1_000L, 500L).subscribe();
+        assertEquals(1, pip.activeTcpScanners());
+
+        first.dispose();
+        assertEquals(1, pip.activeTcpScanners());
+        second.dispose();
+        assertEquals(0, pip.activeTcpScanners());
+    }
+
+    @Test
+    void whenParametersDifferWithinGranularity_thenScannerIsShared() throws IOException {
+        var port          = TcpReachabilityScannerTests.closedPort();
+        var subscriptions = List.of(tcpReachable(port, 1_000L, 300L).subscribe(),
+                tcpReachable(port, 1_100L, 400L).subscribe(), tcpReachable(port, 1_999L, 500L).subscribe());
+        assertEquals(1, pip.activeTcpScanners());
+
+        var other = tcpReachable(port, 2_000L, 500L).subscribe();
+        assertEquals(2, pip.activeTcpScanners());
+
+        subscriptions.forEach(Disposable::dispose);
+        other.dispose();
+        assertEquals(0, pip.activeTcpScanners());
+    }
+
+    @Test
+    void whenTooManyDistinctParameters_thenFurtherScannersAreRejected() throws IOException {
+        var port          = TcpReachabilityScannerTests.closedPort();
+        var subscriptions = new ArrayList<Disposable>();
+        try {
+            for (int i = 0; i < 32; i++) {
+                subscriptions.add(tcpReachable(port, 250L << i, 250L).subscribe());
+            }
+            assertEquals(32, pip.activeTcpScanners());
+
+            var rejected = tcpReachable(port, 250L << 32, 250L);
+            assertThrows(RuntimeException.class, () -> rejected.blockFirst(WAIT));
+            assertEquals(32, pip.activeTcpScanners());
+        } finally {
+            subscriptions.forEach(Disposable::dispose);
+        }
+        assertEquals(0, pip.activeTcpScanners());
+    }
+
+    private Flux<Val> tcpReachable(int port, long pollingIntervalMs, long timeoutMs) {
+        return pip.tcpReachable(LOOPBACK, Val.of(port), Val.of(pollingIntervalMs), Val.of(timeoutMs));
+    }
+
+}
@@ -0,0 +1,125 @@
+package io.sapl.server.lt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class DnsResolutionCacheTests {
+
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    private static final Duration NEGATIVE_TTL = Duration.ofSeconds(5);
+
+    private final AtomicInteger resolutions = new AtomicInteger();
+
+    private final MutableClock clock = new MutableClock();
+
+    /**
+     * Stand-in resolver, mapping 'hostN' to 10.0.0.N after a short delay and
+     * failing for all other names.
+     */
+    private Mono<InetAddress> resolve(String hostname) {
+        resolutions.incrementAndGet();
+        if (!hostname.startsWith("host"))
+            return Mono.error(new UnknownHostException(hostname));
+        var address = new byte[] { 10, 0, 0, (byte) Integer.parseInt(hostname.substring(4)) };
+        return Mono.delay(Duration.ofMillis(50))
+                .then(Mono.fromCallable(() -> InetAddress.getByAddress(hostname, address)));
+    }
+
+    private DnsResolutionCache cache(int maximumSize) {
+        return new DnsResolutionCache(this::resolve, TTL, NEGATIVE_TTL, maximumSize, clock);
+    }
+
+    @Test
+    void whenConcurrentLookupsOfSameName_thenResolvedOnce() {
+        var cache     = cache(10);
+        var addresses = Flux.range(0, 1_000).flatMap(i -> cache.resolve("host1")).collectList().block();
+
+        assertEquals(1_000, addresses.size());
+        assertEquals(1, resolutions.get());
+        assertEquals(1L, cache.statistics().misses());
+        assertEquals(999L, cache.statistics().coalesced() + cache.statistics().hits());
+    }
+
+    @Test
+    void whenTtlExpired_thenResolvedAgain() {
+        var cache = cache(10);
+        cache.resolve("host1").block();
+        clock.advance(TTL.minusSeconds(1));
+        cache.resolve("host1").block();
+        assertEquals(1, resolutions.get());
+
+        clock.advance(Duration.ofSeconds(1));
+        cache.resolve("host1").block();
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    void whenResolutionFails_thenFailureIsCachedForNegativeTtl() {
+        var cache = cache(10);
+        assertThrows(RuntimeException.class, () -> cache.resolve("unknown").block());
+        clock.advance(NEGATIVE_TTL.minusSeconds(1));
+        assertThrows(RuntimeException.class, () -> cache.resolve("unknown").block());
+        assertEquals(1, resolutions.get());
+
+        clock.advance(Duration.ofSeconds(1));
+        assertThrows(RuntimeException.class, () -> cache.resolve("unknown").block());
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    void whenMaximumSizeExceeded_thenLeastRecentlyUsedNameIsEvicted() {
+        var cache = cache(2);
+        cache.resolve("host1").block();
+        cache.resolve("host2").block();
+        cache.resolve("host1").block();
+        cache.resolve("host3").block();
+        assertEquals(3, resolutions.get());
+        assertEquals(1L, cache.statistics().evictions());
+
+        cache.resolve("host1").block();
+        assertEquals(3, resolutions.get());
+        cache.resolve("host2").block();
+        assertEquals(4, resolutions.get());
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+    }
+
+}
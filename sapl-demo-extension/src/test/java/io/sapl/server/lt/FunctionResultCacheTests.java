@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.interpreter.Val;
+
+class FunctionResultCacheTests {
+
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    private final Function<Val[], Val> append = arguments -> {
+        evaluations.incrementAndGet();
+        var builder = new StringBuilder();
+        for (var argument : arguments) {
+            builder.append(argument.get().asText());
+        }
+        return Val.of(builder.toString());
+    };
+
+    private Val fail(Val[] arguments) {
+        evaluations.incrementAndGet();
+        return Val.error("failed");
+    }
+
+    @Test
+    void whenSameArgumentsAgain_thenResultIsServedFromCache() {
+        var cache = new FunctionResultCache("test.append", 1_000L);
+
+        assertEquals("ab", cache.apply(append, Val.of("a"), Val.of("b")).getText());
+        assertEquals("ab", cache.apply(append, Val.of("a"), Val.of("b")).getText());
+
+        assertEquals(1, evaluations.get());
+        assertEquals(1L, cache.statistics().hits());
+        assertEquals(1L, cache.statistics().misses());
+    }
+
+    @Test
+    void whenArgumentsDiffer_thenFunctionIsEvaluated() {
+        var cache = new FunctionResultCache("test.append", 1_000L);
+
+        cache.apply(append, Val.of("a"), Val.of("b"));
+        cache.apply(append, Val.of("b"), Val.of("a"));
+        cache.apply(append, Val.of("ab"));
+        cache.apply(append, Val.of(1));
+        cache.apply(append, Val.of("1"));
+
+        assertEquals(5, evaluations.get());
+        assertEquals(0L, cache.statistics().hits());
+    }
+
+    @Test
+    void whenFunctionReturnsError_thenErrorIsNotCached() {
+        var cache = new FunctionResultCache("test.error", 1_000L);
+
+        assertTrue(cache.apply(this::fail, Val.of("a")).isError());
+        assertTrue(cache.apply(this::fail, Val.of("a")).isError());
+
+        assertEquals(2, evaluations.get());
+        assertEquals(0L, cache.statistics().size());
+    }
+
+    @Test
+    void whenWeightExceeded_thenEntriesAreEvicted() {
+        var cache = new FunctionResultCache("test.append", 100L);
+        for (int i = 0; i < 100; i++) {
+            cache.apply(append, Val.of("argument-" + i));
+        }
+        cache.cleanUp();
+
+        var statistics = cache.statistics();
+        assertTrue(statistics.weight() <= 100L, "weight: " + statistics.weight());
+        assertTrue(statistics.evictions() > 0L, "evictions: " + statistics.evictions());
+    }
+
+    @Test
+    void whenBoundNotPositive_thenRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new FunctionResultCache("test.append", 0L));
+    }
+
+    @Test
+    void whenMatchesIsMemoized_thenResultsEqualTheUnmemoizedFunction() {
+        var memoized = new DemoFunctionLibrary(true);
+        var plain    = new DemoFunctionLibrary(false);
+        var regex    = Val.of("[a-z]+@example\\.com");
+        for (var text : new String[] { "willi@example.com", "willi@example.org", "willi@example.com" }) {
+            assertEquals(plain.matches(Val.of(text), regex).getBoolean(),
+                    memoized.matches(Val.of(text), regex).getBoolean());
+        }
+        assertTrue(plain.matches(Val.of("a"), Val.of("[")).isError());
+        assertTrue(memoized.matches(Val.of("a"), Val.of("[")).isError());
+
+        var statistics = memoized.cacheStatistics().get(0);
+        assertEquals(1L, statistics.hits());
+        assertEquals(4L, statistics.misses());
+        assertTrue(plain.cacheStatistics().isEmpty());
+    }
+
+}
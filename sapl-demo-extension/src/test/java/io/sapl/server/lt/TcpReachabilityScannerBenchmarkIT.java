@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Watches 10.000 hosts with a single scanner. All host names resolve to a
+ * loopback listener, which accepts and closes every connection. Reports the
+ * time until every host reported its first status, and the threads and CPU
+ * time used while scanning. Run with -Dtest=TcpReachabilityScannerBenchmarkIT.
+ */
+class TcpReachabilityScannerBenchmarkIT {
+
+    private static final System.Logger LOGGER = System.getLogger(TcpReachabilityScannerBenchmarkIT.class.getName());
+
+    private static final int HOSTS = 10_000;
+
+    private static final int SCANS = 5;
+
+    private static final Duration POLLING_INTERVAL = Duration.ofSeconds(1);
+
+    private static final Duration TIMEOUT = Duration.ofMillis(500);
+
+    private static final double MILLION = 1_000_000.0D;
+
+    @Test
+    void whenWatching10kHosts_thenReportThreadsAndCpu() throws IOException, InterruptedException {
+        var threads  = ManagementFactory.getThreadMXBean();
+        var os       = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        var listener = new ServerSocket(0, HOSTS, InetAddress.getLoopbackAddress());
+        var acceptor = new Thread(() -> accept(listener), "loopback-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        var scanner       = new TcpReachabilityScanner(POLLING_INTERVAL, TIMEOUT,
+                hostname -> Mono.just(InetAddress.getLoopbackAddress()));
+        var firstStatuses = new CountDownLatch(HOSTS);
+        var reachable     = new AtomicInteger();
+        var watches       = new ArrayList<Disposable>(HOSTS);
+        var threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < HOSTS; i++) {
+                watches.add(scanner.watch("host" + i, listener.getLocalPort()).take(1).doOnNext(status -> {
+                    if (status)
+                        reachable.incrementAndGet();
+                }).doOnTerminate(firstStatuses::countDown).subscribe());
+            }
+            assertTrue(firstStatuses.await(1, TimeUnit.MINUTES));
+            long firstScan = System.nanoTime() - start;
+
+            var continuous = new ArrayList<Disposable>(HOSTS);
+            for (int i = 0; i < HOSTS; i++) {
+                continuous.add(scanner.watch("host" + i, listener.getLocalPort()).subscribe());
+            }
+            assertEquals(HOSTS, scanner.watchedHosts());
+            long cpuBefore = os.getProcessCpuTime();
+            Thread.sleep(POLLING_INTERVAL.multipliedBy(SCANS).toMillis());
+            long cpu = os.getProcessCpuTime() - cpuBefore;
+            continuous.forEach(Disposable::dispose);
+
+            LOGGER.log(Level.INFO, "Watched hosts              : {0}", HOSTS);
+            LOGGER.log(Level.INFO, "Reachable at first scan    : {0}", reachable.get());
+            LOGGER.log(Level.INFO, "Time to first status (all) : {0} ms", firstScan / MILLION);
+            LOGGER.log(Level.INFO, "CPU time per scan          : {0} ms", cpu / MILLION / SCANS);
+            LOGGER.log(Level.INFO, "Threads before / peak      : {0} / {1}", threadsBefore,
+                    threads.getPeakThreadCount());
+        } finally {
+            watches.forEach(Disposable::dispose);
+            scanner.close();
+            listener.close();
+        }
+    }
+
+    private static void accept(ServerSocket listener) {
+        while (!listener.isClosed()) {
+            try {
+                listener.accept().close();
+            } catch (IOException e) {
+                // listener closed or connection reset, keep accepting while open
+            }
+        }
+    }
+
+}
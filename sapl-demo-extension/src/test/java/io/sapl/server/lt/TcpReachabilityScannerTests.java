@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.lt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+
+class TcpReachabilityScannerTests {
+
+    private static final Duration POLLING_INTERVAL = Duration.ofMillis(100);
+
+    private static final Duration TIMEOUT = Duration.ofMillis(50);
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final TcpReachabilityScanner scanner = new TcpReachabilityScanner(POLLING_INTERVAL, TIMEOUT,
+            hostname -> Mono.just(InetAddress.getLoopbackAddress()));
+
+    @AfterEach
+    void closeScanner() {
+        scanner.close();
+    }
+
+    @Test
+    void whenPortIsListening_thenHostIsReachable() throws IOException {
+        try (var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            assertEquals(Boolean.TRUE, scanner.watch("host1", listener.getLocalPort()).blockFirst(WAIT));
+        }
+    }
+
+    @Test
+    void whenPortIsClosed_thenHostIsNotReachable() throws IOException {
+        assertEquals(Boolean.FALSE, scanner.watch("host1", closedPort()).blockFirst(WAIT));
+    }
+
+    @Test
+    void whenListenerStops_thenChangeIsEmitted() throws IOException {
+        var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        var port     = listener.getLocalPort();
+        var statuses = scanner.watch("host1", port).doOnNext(status -> closeIfReachable(listener, status)).take(2)
+                .collectList().block(WAIT);
+
+        assertEquals(List.of(Boolean.TRUE, Boolean.FALSE), statuses);
+    }
+
+    @Test
+    void whenSameHostWatchedTwice_thenItIsScannedOnce() throws IOException {
+        try (var listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            var first  = scanner.watch("host1", listener.getLocalPort()).subscribe();
+            var second = scanner.watch("host1", listener.getLocalPort()).subscribe();
+            var other  = scanner.watch("host2", listener.getLocalPort()).subscribe();
+            assertEquals(2, scanner.watchedHosts());
+
+            first.dispose();
+            assertEquals(2, scanner.watchedHosts());
+            second.dispose();
+            other.dispose();
+            assertEquals(0, scanner.watchedHosts());
+        }
+    }
+
+    @Test
+    void whenHostCannotBeResolved_thenHostIsNotReachable() {
+        var failingScanner = new TcpReachabilityScanner(POLLING_INTERVAL, TIMEOUT,
+                hostname -> Mono.error(new IOException("unknown host " + hostname)));
+        try {
+            assertFalse(failingScanner.watch("unknown", 80).blockFirst(WAIT));
+        } finally {
+            failingScanner.close();
+        }
+    }
+
+    @Test
+    void whenTimeoutExceedsPollingInterval_thenRejected() {
+        var exception = assertThrows(IllegalArgumentException.class,
+                () -> new TcpReachabilityScanner(TIMEOUT, POLLING_INTERVAL));
+        assertTrue(exception.getMessage().contains("timeout"));
+    }
+
+    static int closedPort() throws IOException {
+        try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void closeIfReachable(ServerSocket listener, boolean reachable) {
+        if (!reachable)
+            return;
+        try {
+            listener.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.constraints;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Dispatches constraints to the TypedConstraintHandlerProvider of their type.
+ *
+ * The PEP asks each registered constraint handler provider whether it is
+ * responsible for each constraint of each decision. With many providers, each
+ * searching the constraint for its 'type', this adds up. The registry indexes
+ * the providers by their type once. Each constraint is resolved with a single
+ * lookup of its 'type' field.
+ *
+ * Decisions of a stream usually repeat the same constraints. Thus, the built
+ * handlers are cached per distinct constraint in a bounded Caffeine cache. A
+ * handler is built without blocking the lookups of other constraints.
+ *
+ * @param <H> the type of the handlers, e.g., Consumer&lt;Object&gt;
+ */
+public class ConstraintHandlerRegistry<H> {
+
+    private static final String TYPE = "type";
+
+    private static final int MAXIMUM_CACHED_HANDLERS = 1_000;
+
+    private final Map<String, TypedConstraintHandlerProvider<H>> providers = new HashMap<>();
+
+    private final Cache<JsonNode, H> handlers = Caffeine.newBuilder().maximumSize(MAXIMUM_CACHED_HANDLERS).build();
+
+    /**
+     * @param providers the providers, at most one per type
+     * @throws IllegalArgumentException if two providers handle the same type
+     */
+    public ConstraintHandlerRegistry(List<? extends TypedConstraintHandlerProvider<H>> providers) {
+        for (var provider : providers) {
+            var previous = this.providers.put(provider.getType(), provider);
+            if (previous != null)
+                throw new IllegalArgumentException("The constraint type '" + provider.getType()
+                        + "' is handled by " + previous.getClass().getSimpleName() + " and "
+                        + provider.getClass().getSimpleName() + ".");
+        }
+    }
+
+    /**
+     * @param constraint a constraint
+     * @return true, if a provider is registered for the type of the constraint
+     *         and the constraint is valid
+     */
+    public boolean isResponsible(JsonNode constraint) {
+        var provider = provider(constraint);
+        return provider != null && provider.isValid(constraint);
+    }
+
+    /**
+     * @param constraint a constraint, for which the registry is responsible
+     * @return the cached or newly built handler of the constraint
+     */
+    public H getHandler(JsonNode constraint) {
+        return handlers.get(constraint, key -> provider(key).getHandler(key));
+    }
+
+    private TypedConstraintHandlerProvider<H> provider(JsonNode constraint) {
+        if (constraint == null)
+            return null;
+
+        var type = constraint.get(TYPE);
+        if (type == null || !type.isTextual())
+            return null;
+
+        return providers.get(type.textValue());
+    }
+
+}
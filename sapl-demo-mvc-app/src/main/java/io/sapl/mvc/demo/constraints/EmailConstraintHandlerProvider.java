@@ -21,23 +21,20 @@
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-import io.sapl.spring.constraints.api.ConsumerConstraintHandlerProvider;
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
 
 /**
  * This class demonstrates the implementation of a custom constraint handler for
- * the SAPL spring-boot integration All spring components/beans implementing the
- * interface ConstraintHandler are automatically discovered and registered by
- * the spring policy enforcement points.
+ * the SAPL spring-boot integration. All spring components/beans implementing
+ * the interface TypedConstraintHandlerProvider are automatically discovered and
+ * registered with the spring policy enforcement points by the
+ * ConsumerConstraintHandlerDispatcher.
  */
-@Slf4j
 @Component
-public class EmailConstraintHandlerProvider implements ConsumerConstraintHandlerProvider<Object> {
+@RequiredArgsConstructor
+public class EmailConstraintHandlerProvider implements TypedConstraintHandlerProvider<Consumer<Object>> {
 
-    @Override
-    public Class<Object> getSupportedType() {
-        return Object.class;
-    }
+    private final EmailOutbox outbox;
 
     /**
      * Upon receiving a decision from the PDP containing a constraint, i.e. an
@@ -49,14 +46,20 @@ public Class<Object> getSupportedType() {
      * an appropriate constraint. Its contents solely depends on the domain modeling
      * decisions of the application and policy author.
      *
-     * So each ConstraintHandler requires knowledge about the domain. In this case
-     * it is assumed, that the constraint object contains a field 'type' to
-     * disambiguate different constraints from each other.
+     * In this demo, it is assumed, that the constraint object contains a field
+     * 'type' to disambiguate different constraints from each other. Thus, the
+     * ConsumerConstraintHandlerDispatcher can dispatch the constraints to the
+     * provider of their type, instead of asking all providers.
      *
      * This ConstraintHandler in particular is for sending email messages when
-     * access to a resource is granted. Thus, the canHandle method returns true, if
-     * the type equals 'sendEmail'.
-     *
+     * access to a resource is granted. Thus, the type is 'sendEmail'.
+     */
+    @Override
+    public String getType() {
+        return "sendEmail";
+    }
+
+    /**
      * The PEP must first check if the runtime environment has the ability to handle
      * the constraint, as it must deny access to the resource if the constraint is
      * an obligation that cannot be handled. In this case no other advice or
@@ -68,32 +71,26 @@ public Class<Object> getSupportedType() {
      * does not check for a valid email address, which should be done.
      */
     @Override
-    public boolean isResponsible(JsonNode constraint) {
-        return constraint != null && constraint.has("type") && "sendEmail".equals(constraint.findValue("type").asText())
-                && constraint.has("recipient") && constraint.has("subject") && constraint.has("message");
+    public boolean isValid(JsonNode constraint) {
+        return constraint.has("recipient") && constraint.has("subject") && constraint.has("message");
     }
 
     /**
      * The handle method actually acts on the given constraint and executes the
      * implied behavior of the application.
+     *
+     * Sending the email would put the latency of the mail transport on the path
+     * of the request. Instead, the email is persisted in the outbox and delivered
+     * in the background. The obligation is fulfilled once the outbox accepted the
+     * email. If the outbox is full, the handler fails and, as the constraint is an
+     * obligation, access is denied.
      */
     @Override
     public Consumer<Object> getHandler(JsonNode constraint) {
-        return value -> sendEmail(constraint.findValue("recipient").asText(), constraint.findValue("subject").asText(),
-                constraint.findValue("message").asText());
-    }
-
-    /**
-     * This method sends an email. For the demo purposes this is only printing a log
-     * message. For a real application use a matching mail sender implementation.
-     * 
-     * @param recipient the recipient email address
-     * @param subject   the subject of the mail
-     * @param message   the message
-     */
-    private static void sendEmail(String recipient, String subject, String message) {
-        log.info("An E-Mail has been sent to {} with the subject '{}' and the message '{}'.", recipient, subject,
-                message);
+        var recipient = constraint.findValue("recipient").asText();
+        var subject   = constraint.findValue("subject").asText();
+        var message   = constraint.findValue("message").asText();
+        return value -> outbox.enqueue(recipient, subject, message);
     }
 
 }
@@ -0,0 +1,388 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.constraints;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded, persistent queue of emails, delivered in batches by a background
+ * worker.
+ *
+ * Enqueued emails are appended to a file, one JSON object per line, and
+ * forced to the storage device before they are accepted. After a batch has
+ * been delivered, its last id is appended as well. Once all emails are
+ * delivered, the file is truncated. On startup, the emails without a delivery
+ * record are queued again. Thus, accepted emails survive a restart of the
+ * application and are delivered at least once.
+ *
+ * Failed deliveries are retried with an exponentially growing delay, up to a
+ * maximal number of attempts. Emails which cannot be delivered, e.g., as the
+ * recipient is not a valid address or was rejected by the mail server, are not
+ * retried. They are moved to a dead-letter file instead, together with the
+ * reason of the failure. Thus, an undeliverable email does not block the
+ * emails queued after it. If the queue is full, further emails are rejected.
+ *
+ * Emails are sent with the JavaMailSender configured by the spring.mail.*
+ * properties. Without mail configuration, the delivery is only logged.
+ */
+@Slf4j
+@Component
+public class EmailOutbox {
+
+    private static final long POLL_INTERVAL_MS = 100L;
+
+    private static final String DELIVERED_UP_TO = "deliveredUpTo";
+
+    private final ObjectMapper mapper;
+
+    private final EmailOutboxProperties properties;
+
+    private final JavaMailSender mailSender;
+
+    private final BlockingQueue<Email> queue;
+
+    private final FileChannel file;
+
+    private final FileChannel deadLetters;
+
+    private final Thread worker;
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder deadLettered = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder failedAttempts = new LongAdder();
+
+    private long nextId;
+
+    private volatile int inDelivery;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public EmailOutbox(ObjectMapper mapper, EmailOutboxProperties properties,
+            ObjectProvider<JavaMailSender> mailSender) throws IOException {
+        this(mapper, properties, mailSender.getIfAvailable());
+    }
+
+    /**
+     * @param mapper     the mapper for the lines of the file
+     * @param properties the configuration of the outbox
+     * @param mailSender sends the emails, or null to only log them
+     * @throws IOException if the file cannot be read or opened
+     */
+    EmailOutbox(ObjectMapper mapper, EmailOutboxProperties properties, JavaMailSender mailSender)
+            throws IOException {
+        this.mapper     = mapper;
+        this.properties = properties;
+        this.mailSender = mailSender;
+        var recovered = recover();
+        this.queue      = new ArrayBlockingQueue<>(Math.max(properties.capacity(), recovered.size()));
+        this.queue.addAll(recovered);
+        this.file       = FileChannel.open(properties.file(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (recovered.isEmpty())
+            file.truncate(0L);
+        this.deadLetters = FileChannel.open(properties.deadLetterFile(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.worker = new Thread(this::deliver, "email-outbox");
+        this.worker.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5L));
+        synchronized (file) {
+            file.close();
+        }
+        deadLetters.close();
+    }
+
+    /**
+     * Persists the email and queues it for delivery.
+     *
+     * @param recipient the recipient email address
+     * @param subject   the subject of the mail
+     * @param message   the message
+     * @throws IllegalStateException if the outbox is full
+     * @throws UncheckedIOException  if the email cannot be persisted
+     */
+    public void enqueue(String recipient, String subject, String message) {
+        synchronized (file) {
+            if (queue.remainingCapacity() == 0) {
+                rejected.increment();
+                throw new IllegalStateException("The email outbox is full.");
+            }
+            var email = new Email(nextId, recipient, subject, message);
+            try {
+                append(file, mapper.writeValueAsString(email));
+                file.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Persisting the email failed.", e);
+            }
+            nextId++;
+            queue.add(email);
+        }
+        enqueued.increment();
+    }
+
+    /**
+     * @return the counters of the outbox
+     */
+    public Statistics statistics() {
+        return new Statistics(enqueued.sum(), delivered.sum(), deadLettered.sum(), rejected.sum(),
+                failedAttempts.sum(), queue.size() + inDelivery);
+    }
+
+    private List<Email> recover() throws IOException {
+        var emails = new ArrayList<Email>();
+        if (!Files.exists(properties.file()))
+            return emails;
+
+        var deliveredUpTo = -1L;
+        for (var line : Files.readAllLines(properties.file(), StandardCharsets.UTF_8)) {
+            try {
+                var json = mapper.readTree(line);
+                if (json.has(DELIVERED_UP_TO)) {
+                    deliveredUpTo = Math.max(deliveredUpTo, json.get(DELIVERED_UP_TO).asLong());
+                } else {
+                    var email = mapper.treeToValue(json, Email.class);
+                    emails.add(email);
+                    nextId = Math.max(nextId, email.id() + 1);
+                }
+            } catch (JsonProcessingException e) {
+                // e.g., the last line, if the application stopped while writing it
+                log.warn("Skipping unreadable line of the email outbox: {}", line);
+            }
+        }
+        var lastDelivered = deliveredUpTo;
+        emails.removeIf(email -> email.id() <= lastDelivered);
+        if (!emails.isEmpty())
+            log.info("Recovered {} undelivered emails from {}.", emails.size(), properties.file());
+        return emails;
+    }
+
+    private void deliver() {
+        var batch = new ArrayList<Email>(properties.batchSize());
+        try {
+            while (running) {
+                var first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                batch.add(first);
+                queue.drainTo(batch, properties.batchSize() - 1);
+                inDelivery = batch.size();
+                sendWithRetry(batch);
+                acknowledge(batch.get(batch.size() - 1).id());
+                inDelivery = 0;
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // undelivered emails remain in the file and are delivered after a restart
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Writing to the email outbox {} failed. Delivery stopped.", properties.file(), e);
+        }
+    }
+
+    /**
+     * Sends the emails until each is delivered or dead-lettered. Emails failing
+     * permanently are dead-lettered at once, the others after the maximal number
+     * of attempts.
+     */
+    private void sendWithRetry(List<Email> batch) throws InterruptedException, IOException {
+        var pending = new ArrayList<>(batch);
+        var delay   = properties.retryDelay();
+        for (int attempt = 1;; attempt++) {
+            var failures = send(pending);
+            delivered.add(pending.size() - (long) failures.size());
+            pending.clear();
+            for (var failure : failures.entrySet()) {
+                if (isPermanent(failure.getValue()) || attempt >= properties.maxAttempts())
+                    deadLetter(failure.getKey(), failure.getValue());
+                else
+                    pending.add(failure.getKey());
+            }
+            if (pending.isEmpty())
+                return;
+
+            failedAttempts.increment();
+            log.warn("Delivering {} emails failed, retrying in {}: {}", pending.size(), delay,
+                    failures.get(pending.get(0)).getMessage());
+            Thread.sleep(delay.toMillis());
+            delay = min(delay.multipliedBy(2L), properties.maximumRetryDelay());
+        }
+    }
+
+    /**
+     * @return the emails which could not be delivered, mapped to the reason
+     */
+    private Map<Email, Exception> send(List<Email> emails) {
+        var failures = new LinkedHashMap<Email, Exception>();
+        if (mailSender == null) {
+            emails.forEach(
+                    email -> log.info("An E-Mail has been sent to {} with the subject '{}' and the message '{}'.",
+                            email.recipient(), email.subject(), email.message()));
+            return failures;
+        }
+        var messages = new ArrayList<SimpleMailMessage>(emails.size());
+        var sent     = new IdentityHashMap<SimpleMailMessage, Email>();
+        for (var email : emails) {
+            try {
+                new InternetAddress(email.recipient(), true);
+            } catch (AddressException e) {
+                failures.put(email, e);
+                continue;
+            }
+            var message = new SimpleMailMessage();
+            message.setFrom(properties.sender());
+            message.setTo(email.recipient());
+            message.setSubject(email.subject());
+            message.setText(email.message());
+            messages.add(message);
+            sent.put(message, email);
+        }
+        if (messages.isEmpty())
+            return failures;
+
+        try {
+            mailSender.send(messages.toArray(SimpleMailMessage[]::new));
+        } catch (MailSendException e) {
+            // the exceptions of the failed messages, the other messages were sent
+            var failed = new LinkedHashMap<Email, Exception>();
+            e.getFailedMessages().forEach((message, exception) -> {
+                var email = sent.get(message);
+                if (email != null)
+                    failed.put(email, exception);
+            });
+            if (failed.isEmpty())
+                messages.forEach(message -> failed.put(sent.get(message), e));
+            failures.putAll(failed);
+        } catch (MailException e) {
+            messages.forEach(message -> failures.put(sent.get(message), e));
+        }
+        return failures;
+    }
+
+    /*
+     * Invalid addresses and recipients rejected by the mail server fail again on
+     * each retry. Other failures, e.g., an unreachable mail server, may pass.
+     */
+    private static boolean isPermanent(Exception exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AddressException || cause instanceof MailParseException)
+                return true;
+            if (cause instanceof SendFailedException sendFailed && sendFailed.getInvalidAddresses() != null
+                    && sendFailed.getInvalidAddresses().length > 0)
+                return true;
+        }
+        return false;
+    }
+
+    private void deadLetter(Email email, Exception reason) throws IOException {
+        ObjectNode line = mapper.valueToTree(email);
+        line.put("error", String.valueOf(reason.getMessage()));
+        append(deadLetters, line.toString());
+        deadLetters.force(true);
+        deadLettered.increment();
+        log.error("The email {} to {} cannot be delivered and was moved to {}: {}", email.id(), email.recipient(),
+                properties.deadLetterFile(), reason.getMessage());
+    }
+
+    private void acknowledge(long id) throws IOException {
+        synchronized (file) {
+            append(file, mapper.createObjectNode().put(DELIVERED_UP_TO, id).toString());
+            if (queue.isEmpty())
+                file.truncate(0L);
+        }
+    }
+
+    private static void append(FileChannel channel, String line) throws IOException {
+        var bytes = ByteBuffer.wrap((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /**
+     * @param enqueued       the emails accepted
+     * @param delivered      the emails delivered
+     * @param deadLettered   the emails moved to the dead-letter file, as they
+     *                       could not be delivered
+     * @param rejected       the emails rejected, as the outbox was full
+     * @param failedAttempts the failed attempts to deliver a batch
+     * @param queueDepth     the emails waiting for delivery
+     */
+    public record Statistics(long enqueued, long delivered, long deadLettered, long rejected, long failedAttempts,
+            int queueDepth) {
+    }
+
+    record Email(long id, String recipient, String subject, String message) {
+    }
+
+}
@@ -21,23 +21,18 @@
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-import io.sapl.spring.constraints.api.ConsumerConstraintHandlerProvider;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * This class demonstrates the implementation of a custom constraint handler for
- * the SAPL spring-boot integration All spring components/beans implementing the
- * interface ConstraintHandler are automatically discovered and registered by
- * the spring policy enforcement points.
+ * the SAPL spring-boot integration. All spring components/beans implementing
+ * the interface TypedConstraintHandlerProvider are automatically discovered and
+ * registered with the spring policy enforcement points by the
+ * ConsumerConstraintHandlerDispatcher.
  */
 @Slf4j
 @Service
-public class LoggingConstraintHandlerProvider implements ConsumerConstraintHandlerProvider<Object> {
-
-    @Override
-    public Class<Object> getSupportedType() {
-        return Object.class;
-    }
+public class LoggingConstraintHandlerProvider implements TypedConstraintHandlerProvider<Consumer<Object>> {
 
     /**
      * Upon receiving a decision from the PDP containing a constraint, i.e. an
@@ -49,27 +44,27 @@ public Class<Object> getSupportedType() {
      * an appropriate constraint. Its contents solely depends on the domain modeling
      * decisions of the application and policy author.
      *
-     * So each ConstraintHandler requires knowledge about the domain. In this case
-     * it is assumed, that the constraint object contains a field 'type' to
-     * disambiguate different constraints from each other.
+     * In this demo, it is assumed, that the constraint object contains a field
+     * 'type' to disambiguate different constraints from each other. Thus, the
+     * ConsumerConstraintHandlerDispatcher can dispatch the constraints to the
+     * provider of their type, instead of asking all providers.
      *
      * This ConstraintHandler in particular is for logging messages when access to a
-     * resource is granted. Thus, the canHandle method returns true, if the type
-     * equals 'message'.
-     *
-     * The PEP must first check if the runtime environment has the ability to handle
-     * the constraint, as it must deny access to the resource if the constraint is
-     * an obligation that cannot be handled. In this case no other advice or
-     * obligations have to be followed.
-     *
+     * resource is granted. Thus, the type is 'logAccess'.
+     */
+    @Override
+    public String getType() {
+        return "logAccess";
+    }
+
+    /**
      * It is a good practice to validate the overall constraint object given, as an
      * invalid constraint cannot be handled and declining a constraint at this stage
      * leads to a clean behavior in case of obligations.
      */
     @Override
-    public boolean isResponsible(JsonNode constraint) {
-        return constraint != null && constraint.has("type")
-                && "logAccess".equals(constraint.findValue("type").asText());
+    public boolean isValid(JsonNode constraint) {
+        return constraint.has("message");
     }
 
     /**
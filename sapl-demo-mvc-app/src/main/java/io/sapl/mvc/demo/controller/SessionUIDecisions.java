@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.controller;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import jakarta.servlet.http.HttpSessionBindingEvent;
+import jakarta.servlet.http.HttpSessionBindingListener;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The decisions on UI elements of one HTTP session.
+ *
+ * Each decision is taken from a subscription to the PDP, which stays open as
+ * long as the decision is cached. Thus, the cached decision changes as soon as
+ * the PDP decides differently, e.g., after a policy update. The decisions
+ * missing for the checks of one view are requested together with a single
+ * MultiAuthorizationSubscription, whose stream feeds all of them. At most a
+ * fixed number of decisions is kept per session. The least recently used
+ * decision is evicted. The stream of a view is cancelled once all of its
+ * decisions are evicted.
+ *
+ * The decisions are stored as an attribute of the session. When the session
+ * ends, i.e., on logout or expiry, the attribute is unbound and all
+ * subscriptions are cancelled.
+ */
+class SessionUIDecisions implements HttpSessionBindingListener {
+
+    private final Map<AuthorizationSubscription, CachedDecision> decisions;
+
+    SessionUIDecisions(int maximumSize) {
+        decisions = new LinkedHashMap<>(16, 0.75F, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AuthorizationSubscription, CachedDecision> eldest) {
+                var evict = size() > maximumSize;
+                if (evict)
+                    eldest.getValue().dispose();
+                return evict;
+            }
+
+        };
+    }
+
+    /**
+     * @param subscription the subscription for the UI element
+     * @return the cached decision, or null if the decision is not cached
+     */
+    synchronized CachedDecision get(AuthorizationSubscription subscription) {
+        return decisions.get(subscription);
+    }
+
+    /**
+     * Looks up the cached decisions for the UI elements of a view. The
+     * decisions not cached yet are subscribed to with one multi-subscription.
+     *
+     * @param subscriptions the subscriptions for the UI elements
+     * @param decide        subscribes to the decisions of the PDP
+     * @return the cached decisions in the order of the subscriptions, and the
+     *         number of decisions which were not cached
+     */
+    synchronized Lookup subscribeAll(Collection<AuthorizationSubscription> subscriptions,
+            Function<MultiAuthorizationSubscription, Flux<IdentifiableAuthorizationDecision>> decide) {
+        var found  = new HashMap<AuthorizationSubscription, CachedDecision>();
+        var misses = new LinkedHashSet<AuthorizationSubscription>();
+        for (var subscription : subscriptions) {
+            var cached = decisions.get(subscription);
+            if (cached != null)
+                found.put(subscription, cached);
+            else
+                misses.add(subscription);
+        }
+
+        if (!misses.isEmpty()) {
+            var batch             = new Batch(misses.size());
+            var multiSubscription = new MultiAuthorizationSubscription();
+            var byId              = new HashMap<String, CachedDecision>();
+            for (var subscription : misses) {
+                var id     = String.valueOf(byId.size());
+                var cached = new CachedDecision(batch);
+                multiSubscription.addAuthorizationSubscription(id, subscription);
+                byId.put(id, cached);
+                found.put(subscription, cached);
+                decisions.put(subscription, cached);
+            }
+            batch.connect(decide.apply(multiSubscription), byId);
+        }
+
+        return new Lookup(subscriptions.stream().map(found::get).toList(), misses.size());
+    }
+
+    /**
+     * @return the number of cached decisions
+     */
+    synchronized int size() {
+        return decisions.size();
+    }
+
+    @Override
+    public synchronized void valueUnbound(HttpSessionBindingEvent event) {
+        decisions.values().forEach(CachedDecision::dispose);
+        decisions.clear();
+    }
+
+    /**
+     * @param decisions the cached decisions, in the order of the subscriptions
+     * @param misses    the number of decisions which were not cached and have
+     *                  been requested from the PDP
+     */
+    record Lookup(List<CachedDecision> decisions, int misses) {
+    }
+
+    /**
+     * The stream of one multi-subscription, shared by the decisions it feeds.
+     * It is cancelled once all of these decisions are evicted.
+     */
+    private static class Batch {
+
+        private final AtomicInteger cachedDecisions;
+
+        private final Disposable.Swap connection = Disposables.swap();
+
+        private Batch(int cachedDecisions) {
+            this.cachedDecisions = new AtomicInteger(cachedDecisions);
+        }
+
+        private void connect(Flux<IdentifiableAuthorizationDecision> source, Map<String, CachedDecision> byId) {
+            connection.update(source.subscribe(decision -> {
+                var cached = byId.get(decision.getAuthorizationSubscriptionId());
+                if (cached != null)
+                    cached.update(decision.getAuthorizationDecision());
+            }, error -> byId.values().forEach(cached -> cached.update(AuthorizationDecision.INDETERMINATE)),
+                    () -> byId.values().forEach(CachedDecision::complete)));
+        }
+
+        private void release() {
+            if (cachedDecisions.decrementAndGet() == 0)
+                connection.dispose();
+        }
+
+    }
+
+    /**
+     * The latest decision for a UI element of an open subscription to the PDP.
+     */
+    static class CachedDecision {
+
+        private final Sinks.Many<AuthorizationDecision> decisions = Sinks.many().replay().latest();
+
+        private final Batch batch;
+
+        private CachedDecision(Batch batch) {
+            this.batch = batch;
+        }
+
+        /**
+         * Waits for the first decision, if the PDP has not decided yet.
+         *
+         * @return the latest decision, or null if the subscription ended before
+         *         the PDP decided
+         */
+        AuthorizationDecision current() {
+            return decisions.asFlux().blockFirst();
+        }
+
+        private void update(AuthorizationDecision decision) {
+            decisions.tryEmitNext(decision);
+        }
+
+        private void complete() {
+            decisions.tryEmitComplete();
+        }
+
+        private void dispose() {
+            complete();
+            batch.release();
+        }
+
+    }
+
+}
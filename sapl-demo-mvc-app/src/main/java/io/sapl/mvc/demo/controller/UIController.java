@@ -16,7 +16,11 @@
 package io.sapl.mvc.demo.controller;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -26,13 +30,11 @@
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import io.sapl.api.pdp.AuthorizationSubscription;
-import io.sapl.api.pdp.Decision;
-import io.sapl.api.pdp.PolicyDecisionPoint;
 import io.sapl.mvc.demo.domain.Patient;
 import io.sapl.mvc.demo.domain.PatientRepository;
 import io.sapl.spring.method.metadata.PreEnforce;
@@ -50,12 +52,14 @@ public class UIController {
 
     private static final String REDIRECT_PATIENTS = "redirect:/patients";
 
-    private final ObjectMapper om;
+    private static final int PAGE_SIZE = 50;
 
-    private final PolicyDecisionPoint pdp;
+    private final ObjectMapper om;
 
     private final PatientRepository patientRepository;
 
+    private final UIElementAuthorization uiAuthorization;
+
     @StandardException
     @ResponseStatus(value = HttpStatus.NOT_FOUND)
     public static class ResourceNotFoundException extends RuntimeException {
@@ -73,10 +77,21 @@ public String home(Model model, Authentication authentication) {
 
     @PreEnforce
     @GetMapping("/patients")
-    public String getPatients(HttpServletRequest request, Model model, Authentication authentication) {
-        model.addAttribute("patients", patientRepository.findAll());
-        model.addAttribute("permittedToUseCreatePatientButton",
-                isPermitted(authentication, "use", "ui:view:patients:createPatientButton"));
+    public String getPatients(HttpServletRequest request, @RequestParam(required = false) Long after, Model model,
+            Authentication authentication) {
+        /*
+         * Keyset pagination: the next page starts after the last id of the current
+         * page. Thus, only the rows of the page are read, regardless of the number
+         * of patients.
+         */
+        var patients = patientRepository.findByIdGreaterThan(after == null ? Long.MIN_VALUE : after,
+                PageRequest.of(0, PAGE_SIZE, Sort.by("id")));
+        model.addAttribute("patients", patients.getContent());
+        if (patients.hasNext()) {
+            model.addAttribute("nextPageAfter", patients.getContent().get(patients.getNumberOfElements() - 1).getId());
+        }
+        model.addAllAttributes(uiAuthorization.forSession(request.getSession(), authentication)
+                .check("permittedToUseCreatePatientButton", "use", "ui:view:patients:createPatientButton").decide());
         return "patients";
     }
 
@@ -100,13 +115,15 @@ public String newPatient(Model model) {
 
     @PreEnforce
     @GetMapping("/patients/{id}")
-    public String getPatient(@PathVariable Long id, Model model, Authentication authentication) throws IOException {
+    public String getPatient(HttpServletRequest request, @PathVariable Long id, Model model,
+            Authentication authentication) throws IOException {
         Patient patient = patientRepository.findById(id).orElseThrow(ResourceNotFoundException::new);
         model.addAttribute(PATIENT, patient);
-        model.addAttribute("permittedToUseUpdatePatientButton",
-                isPermitted(authentication, "use", "ui:view:patient:updatePatientButton"));
-        model.addAttribute("permittedToUseDeletePatientButton", isPermitted(authentication, "use",
-                om.readTree("{ \"id\": " + id + ", \"uiElement\": \"ui:view:patient:deletePatientButton\"}")));
+        model.addAllAttributes(uiAuthorization.forSession(request.getSession(), authentication)
+                .check("permittedToUseUpdatePatientButton", "use", "ui:view:patient:updatePatientButton")
+                .check("permittedToUseDeletePatientButton", "use",
+                        om.readTree("{ \"id\": " + id + ", \"uiElement\": \"ui:view:patient:deletePatientButton\"}"))
+                .decide());
         return PATIENT;
     }
 
@@ -119,17 +136,15 @@ public String deletePatient(@PathVariable Long id) {
 
     @PreEnforce
     @GetMapping("/patients/{id}/update")
-    public String updatePatient(@PathVariable Long id, Model model, Authentication authentication) {
+    public String updatePatient(HttpServletRequest request, @PathVariable Long id, Model model,
+            Authentication authentication) {
         Patient patient = patientRepository.findById(id).orElseThrow(ResourceNotFoundException::new);
         model.addAttribute(PATIENT, patient);
-        model.addAttribute("permittedToUpdateDiagnosis",
-                isPermitted(authentication, "edit", "ui:view:patients:diagnosisField"));
-        model.addAttribute("permittedToUpdateIcdClassification",
-                isPermitted(authentication, "edit", "ui:view:patients:icd11Field"));
-        model.addAttribute("permittedToUpdateAttendingDoctor",
-                isPermitted(authentication, "edit", "ui:view:patients:doctorField"));
-        model.addAttribute("permittedToUpdateAttendingNurse",
-                isPermitted(authentication, "edit", "ui:view:patients:nurseField"));
+        model.addAllAttributes(uiAuthorization.forSession(request.getSession(), authentication)
+                .check("permittedToUpdateDiagnosis", "edit", "ui:view:patients:diagnosisField")
+                .check("permittedToUpdateIcdClassification", "edit", "ui:view:patients:icd11Field")
+                .check("permittedToUpdateAttendingDoctor", "edit", "ui:view:patients:doctorField")
+                .check("permittedToUpdateAttendingNurse", "edit", "ui:view:patients:nurseField").decide());
         return "updatePatient";
     }
 
@@ -137,44 +152,29 @@ public String updatePatient(@PathVariable Long id, Model model, Authentication a
     @PostMapping("/patients/{id}")
     public String updatePatient(@ModelAttribute(PATIENT) Patient patient, @PathVariable Long id) {
         log.info("Got patient: {}", patient);
-        if (patient.getName() != null) {
-            patientRepository.updateNameById(patient.getName(), id);
-        }
-
-        if (patient.getDiagnosisText() != null) {
-            patientRepository.updateDiagnosisTextById(patient.getDiagnosisText(), id);
-        }
-
-        if (patient.getIcd11Code() != null) {
-            patientRepository.updateIcd11CodeById(patient.getIcd11Code(), id);
-        }
-
-        if (patient.getPhoneNumber() != null) {
-            patientRepository.updatePhoneNumberById(patient.getPhoneNumber(), id);
-        }
-
-        if (patient.getRoomNumber() != null) {
-            patientRepository.updateRoomNumberById(patient.getRoomNumber(), id);
-        }
-
-        if (patient.getAttendingDoctor() != null) {
-            patientRepository.updateAttendingDoctorById(patient.getAttendingDoctor(), id);
-        }
-
-        if (patient.getAttendingNurse() != null) {
-            patientRepository.updateAttendingNurseById(patient.getAttendingNurse(), id);
+        /*
+         * All submitted fields are updated with a single statement, which is
+         * authorized with a single decision.
+         */
+        var changes = new LinkedHashMap<String, String>();
+        putIfPresent(changes, "name", patient.getName());
+        putIfPresent(changes, "diagnosisText", patient.getDiagnosisText());
+        putIfPresent(changes, "icd11Code", patient.getIcd11Code());
+        putIfPresent(changes, "phoneNumber", patient.getPhoneNumber());
+        putIfPresent(changes, "roomNumber", patient.getRoomNumber());
+        putIfPresent(changes, "attendingDoctor", patient.getAttendingDoctor());
+        putIfPresent(changes, "attendingNurse", patient.getAttendingNurse());
+        if (!changes.isEmpty()) {
+            patientRepository.updateFieldsById(id, changes);
         }
 
         return REDIRECT_PATIENTS + "/" + id;
     }
 
-    private boolean isPermitted(Object subject, Object action, Object resource) {
-        var permitted = pdp.decide(AuthorizationSubscription.of(subject, action, resource))
-                .map(d -> d.getDecision() == Decision.PERMIT).blockFirst();
-        if (permitted == null) {
-            return false;
+    private static void putIfPresent(Map<String, String> changes, String field, String value) {
+        if (value != null) {
+            changes.put(field, value);
         }
-        return permitted;
     }
 
 }
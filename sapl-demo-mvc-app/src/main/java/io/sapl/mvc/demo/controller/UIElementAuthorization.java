@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.WebUtils;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Decides on all UI elements of a view with a single request to the PDP.
+ *
+ * Views show or hide several UI elements depending on the permissions of the
+ * user. Instead of one decision per element, the checks of a view are collected
+ * into one MultiAuthorizationSubscription and evaluated together. The results
+ * are added to the model of the view, where Thymeleaf templates can access them
+ * by their names.
+ *
+ * <pre>
+ * model.addAllAttributes(uiAuthorization.forSubject(authentication)
+ *         .check("permittedToUseUpdatePatientButton", "use", "ui:view:patient:updatePatientButton")
+ *         .check("permittedToUseDeletePatientButton", "use", deleteButton).decide());
+ * </pre>
+ *
+ * Checks created with forSession(session, authentication) are answered from the
+ * decisions cached in the HTTP session instead. The checks of a view missing
+ * in the cache are requested with one MultiAuthorizationSubscription, whose
+ * open stream keeps their cached decisions up to date, i.e., policy updates are
+ * reflected without asking the PDP again for each rendered view.
+ */
+@Component
+@RequiredArgsConstructor
+public class UIElementAuthorization {
+
+    static final String SESSION_ATTRIBUTE = UIElementAuthorization.class.getName() + ".DECISIONS";
+
+    static final int MAXIMUM_DECISIONS_PER_SESSION = 64;
+
+    private final PolicyDecisionPoint pdp;
+
+    private final LongAdder pdpRequests = new LongAdder();
+
+    private final LongAdder checks = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * @param subject the subject of all checks, usually the Authentication of
+     *                the user
+     * @return an empty set of checks for the subject
+     */
+    public Checks forSubject(Object subject) {
+        return new Checks(subject, null);
+    }
+
+    /**
+     * @param session the session of the user
+     * @param subject the subject of all checks, usually the Authentication of
+     *                the user
+     * @return an empty set of checks for the subject, answered from the decisions
+     *         cached in the session
+     */
+    public Checks forSession(HttpSession session, Object subject) {
+        SessionUIDecisions decisions;
+        synchronized (WebUtils.getSessionMutex(session)) {
+            decisions = (SessionUIDecisions) session.getAttribute(SESSION_ATTRIBUTE);
+            if (decisions == null) {
+                decisions = new SessionUIDecisions(MAXIMUM_DECISIONS_PER_SESSION);
+                session.setAttribute(SESSION_ATTRIBUTE, decisions);
+            }
+        }
+        return new Checks(subject, decisions);
+    }
+
+    /**
+     * @return the number of requests sent to the PDP, i.e., one
+     *         multi-subscription per view with uncached checks
+     */
+    public long pdpRequests() {
+        return pdpRequests.sum();
+    }
+
+    /**
+     * @return the number of UI elements checked
+     */
+    public long checks() {
+        return checks.sum();
+    }
+
+    /**
+     * @return the number of checks answered from the decisions cached in the
+     *         sessions, i.e., the requests to the PDP saved
+     */
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * @return the ratio of checks of sessions answered from the cache to all
+     *         checks
+     */
+    public double cacheHitRate() {
+        var allChecks = checks.sum();
+        return allChecks == 0 ? 0.0D : (double) cacheHits.sum() / allChecks;
+    }
+
+    /**
+     * The checks of the UI elements of one view.
+     */
+    public class Checks {
+
+        private final Object subject;
+
+        private final SessionUIDecisions sessionDecisions;
+
+        private final Map<String, AuthorizationSubscription> subscriptions = new LinkedHashMap<>();
+
+        private Checks(Object subject, SessionUIDecisions sessionDecisions) {
+            this.subject          = subject;
+            this.sessionDecisions = sessionDecisions;
+        }
+
+        /**
+         * @param name     the name under which the result is exposed to the view
+         * @param action   the action on the UI element, e.g., use or edit
+         * @param resource the UI element
+         * @return these checks
+         */
+        public Checks check(String name, Object action, Object resource) {
+            subscriptions.put(name, AuthorizationSubscription.of(subject, action, resource));
+            return this;
+        }
+
+        /**
+         * Decides on all checks with a single request to the PDP, or from the
+         * decisions cached in the session. Checks missing in the cache of the
+         * session are requested with a single request as well.
+         *
+         * @return the names of the checks mapped to true, if the use of the UI
+         *         element is permitted
+         */
+        public Map<String, Boolean> decide() {
+            var results = new LinkedHashMap<String, Boolean>();
+            if (subscriptions.isEmpty())
+                return results;
+
+            checks.add(subscriptions.size());
+            if (sessionDecisions != null)
+                return decideCached(results);
+
+            var multiSubscription = new MultiAuthorizationSubscription();
+            subscriptions.forEach(multiSubscription::addAuthorizationSubscription);
+            pdpRequests.increment();
+            var decision = pdp.decideAll(multiSubscription).blockFirst();
+            for (var name : subscriptions.keySet()) {
+                results.put(name, decision != null && decision.isAccessPermittedForSubscriptionWithId(name));
+            }
+            return results;
+        }
+
+        private Map<String, Boolean> decideCached(Map<String, Boolean> results) {
+            var lookup = sessionDecisions.subscribeAll(subscriptions.values(), pdp::decide);
+            if (lookup.misses() > 0)
+                pdpRequests.increment();
+            cacheHits.add(subscriptions.size() - lookup.misses());
+            var cached = lookup.decisions().iterator();
+            for (var name : subscriptions.keySet()) {
+                var decision = cached.next().current();
+                results.put(name, decision != null && decision.getDecision() == Decision.PERMIT);
+            }
+            return results;
+        }
+
+    }
+
+}
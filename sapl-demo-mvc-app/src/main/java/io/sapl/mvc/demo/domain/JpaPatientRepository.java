@@ -17,6 +17,7 @@
 
 import org.springframework.data.repository.CrudRepository;
 
-public interface JpaPatientRepository extends CrudRepository<Patient, Long>, PatientRepository {
+public interface JpaPatientRepository
+        extends CrudRepository<Patient, Long>, PatientRepository, PatientFieldsUpdate {
 
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.domain;
+
+import java.util.Map;
+
+/**
+ * Repository fragment updating several fields of a patient with a single
+ * statement.
+ */
+public interface PatientFieldsUpdate {
+
+    /**
+     * @param id      the id of the patient
+     * @param changes the names of the fields to update mapped to their new values
+     */
+    void updateFieldsById(Long id, Map<String, String> changes);
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.domain;
+
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Implements the PatientFieldsUpdate fragment with a criteria update. Spring
+ * Data detects the implementation by the suffix 'Impl' of its name.
+ */
+class PatientFieldsUpdateImpl implements PatientFieldsUpdate {
+
+    static final Set<String> UPDATABLE_FIELDS = Set.of("name", "icd11Code", "diagnosisText", "attendingDoctor",
+            "attendingNurse", "phoneNumber", "roomNumber");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void updateFieldsById(Long id, Map<String, String> changes) {
+        if (changes.isEmpty())
+            return;
+
+        var builder = entityManager.getCriteriaBuilder();
+        var update  = builder.createCriteriaUpdate(Patient.class);
+        var patient = update.from(Patient.class);
+        changes.forEach((field, value) -> {
+            if (!UPDATABLE_FIELDS.contains(field))
+                throw new IllegalArgumentException("The field '" + field + "' of a patient cannot be updated.");
+            update.set(patient.<String>get(field), value);
+        });
+        update.where(builder.equal(patient.get("id"), id));
+        entityManager.createQuery(update).executeUpdate();
+    }
+
+}
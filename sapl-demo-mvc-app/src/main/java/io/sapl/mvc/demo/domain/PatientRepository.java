@@ -16,8 +16,12 @@
 package io.sapl.mvc.demo.domain;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
@@ -36,6 +40,29 @@ public interface PatientRepository {
     @PreEnforce
     List<Patient> findAll();
 
+    /**
+     * Keyset pagination of all patients. Only the patients of the requested
+     * slice are loaded, without counting all patients.
+     *
+     * @param id       the id after which the slice starts, i.e., the id of the
+     *                 last patient of the previous slice
+     * @param pageable the size and sort order of the slice, should be sorted by
+     *                 id
+     * @return the patients with an id greater than the given id
+     */
+    @PreEnforce
+    Slice<Patient> findByIdGreaterThan(Long id, Pageable pageable);
+
+    /**
+     * The patients are loaded while the stream is consumed. The stream has to be
+     * consumed within a transaction and closed afterwards.
+     *
+     * @return all patients, ordered by id
+     */
+    @PreEnforce
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAll();
+
     @PreEnforce
     Patient save(Patient patient);
 
@@ -84,4 +111,16 @@ public interface PatientRepository {
     @Query("update Patient p set p.roomNumber = ?1 where p.id = ?2")
     void updateRoomNumberById(String roomNumber, Long id);
 
+    /**
+     * Updates several fields of the patient with a single statement. The update
+     * is authorized once, with the id of the patient and the names of the
+     * updated fields as the resource.
+     *
+     * @param id      the id of the patient
+     * @param changes the names of the fields to update mapped to their new values
+     */
+    @PreEnforce(resource = "{ 'id': #id, 'fields': #changes.keySet() }")
+    @Transactional
+    void updateFieldsById(Long id, Map<String, String> changes);
+
 }
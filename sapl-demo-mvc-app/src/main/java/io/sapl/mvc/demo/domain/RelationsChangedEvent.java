@@ -0,0 +1,26 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.domain;
+
+/**
+ * Published after relations were created or deleted through the
+ * RelationRepository.
+ *
+ * @param patientId the id of the patient whose relations changed, or null if
+ *                  unknown, i.e., the relations of any patient may have changed
+ */
+public record RelationsChangedEvent(Long patientId) {
+}
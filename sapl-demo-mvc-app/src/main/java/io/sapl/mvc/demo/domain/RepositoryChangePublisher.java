@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.domain;
+
+import java.util.HashSet;
+
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publishes application events for all write paths of the PatientRepository
+ * and the RelationRepository.
+ *
+ * The update methods of the PatientRepository are bulk JPQL statements, which
+ * bypass JPA entity listeners. Thus, the events are published around the
+ * repository methods instead. Listeners interested in committed changes only
+ * should use {@code @TransactionalEventListener}.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class RepositoryChangePublisher {
+
+    private final ApplicationEventPublisher publisher;
+
+    @AfterReturning(pointcut = "execution(* io.sapl.mvc.demo.domain.PatientRepository.save(..))", returning = "patient")
+    public void afterPatientSaved(Patient patient) {
+        publisher.publishEvent(new PatientChangedEvent(patient.getId()));
+    }
+
+    @AfterReturning("execution(* io.sapl.mvc.demo.domain.PatientRepository.deleteById(..)) && args(id)")
+    public void afterPatientDeleted(Long id) {
+        publisher.publishEvent(new PatientChangedEvent(id));
+    }
+
+    @AfterReturning("execution(* io.sapl.mvc.demo.domain.PatientRepository.update*ById(..)) && args(.., id)")
+    public void afterPatientUpdated(Long id) {
+        publisher.publishEvent(new PatientChangedEvent(id));
+    }
+
+    @AfterReturning("execution(* io.sapl.mvc.demo.domain.PatientRepository.updateFieldsById(..)) && args(id, ..)")
+    public void afterPatientFieldsUpdated(Long id) {
+        publisher.publishEvent(new PatientChangedEvent(id));
+    }
+
+    @AfterReturning(pointcut = "execution(* io.sapl.mvc.demo.domain.RelationRepository.save(..))",
+            returning = "relation")
+    public void afterRelationSaved(Relation relation) {
+        publisher.publishEvent(new RelationsChangedEvent(relation.getPatientId()));
+    }
+
+    @AfterReturning(pointcut = "execution(* io.sapl.mvc.demo.domain.RelationRepository.saveAll(..))",
+            returning = "relations")
+    public void afterRelationsSaved(Iterable<Relation> relations) {
+        var patientIds = new HashSet<Long>();
+        relations.forEach(relation -> patientIds.add(relation.getPatientId()));
+        patientIds.forEach(patientId -> publisher.publishEvent(new RelationsChangedEvent(patientId)));
+    }
+
+    @AfterReturning("execution(* io.sapl.mvc.demo.domain.RelationRepository.delete*(..))")
+    public void afterRelationsDeleted() {
+        publisher.publishEvent(new RelationsChangedEvent(null));
+    }
+
+}
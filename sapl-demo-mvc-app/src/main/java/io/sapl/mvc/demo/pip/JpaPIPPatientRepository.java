@@ -19,5 +19,9 @@
 
 import io.sapl.mvc.demo.domain.Patient;
 
+/**
+ * The findById method looks up the patient in the second-level cache of
+ * Hibernate before querying the database.
+ */
 public interface JpaPIPPatientRepository extends CrudRepository<Patient, Long>, PIPPatientRepository {
 }
@@ -15,9 +15,29 @@
  */
 package io.sapl.mvc.demo.pip;
 
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 import io.sapl.mvc.demo.domain.Relation;
+import jakarta.persistence.QueryHint;
 
+/**
+ * The queries of the PIP are answered from the query cache of Hibernate. The
+ * cached results only contain the ids of the relations. The relations
+ * themselves are served from the second-level cache. Hibernate invalidates the
+ * cached results once the Relation table is changed through JPA.
+ */
 public interface JpaPIPRelationRepository extends CrudRepository<Relation, Long>, PIPRelationRepository {
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Relation> findByPatientId(Long id);
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    boolean existsByPatientIdAndUsername(Long patientId, String username);
+
 }
@@ -23,4 +23,6 @@ public interface PIPRelationRepository {
 
     List<Relation> findByPatientId(Long id);
 
+    boolean existsByPatientIdAndUsername(Long patientId, String username);
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import javax.cache.CacheManager;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+/**
+ * Provides the in-process cache manager of the second-level cache of
+ * Hibernate, which caches the patients and relations loaded by the
+ * repositories of the PatientPIP.
+ *
+ * The default cache manager of JCache is shared by the whole JVM and closed by
+ * Hibernate with the first application context shutting down. Thus, each
+ * application context gets its own Caffeine cache manager, e.g., when tests
+ * start several contexts. The sizes of the caches are configured in the
+ * application.conf.
+ */
+@Configuration(proxyBeanMethods = false)
+public class PIPSecondLevelCacheConfiguration {
+
+    @Bean(destroyMethod = "close")
+    CacheManager pipCacheManager() {
+        return new CaffeineCachingProvider().getCacheManager();
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer pipCacheManagerCustomizer(CacheManager pipCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, pipCacheManager);
+    }
+
+}
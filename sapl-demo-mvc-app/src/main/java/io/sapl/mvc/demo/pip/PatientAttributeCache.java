@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.sapl.api.interpreter.Val;
+
+/**
+ * A bounded cache for attribute values of patients with a time-to-live, backed
+ * by Caffeine.
+ *
+ * Entries are invalidated explicitly when the underlying data changes. The
+ * time-to-live is a safety net for changes which bypass the repositories, e.g.,
+ * changes made directly in the database. If the maximum size is reached,
+ * Caffeine evicts the entries least likely to be used again.
+ */
+public class PatientAttributeCache {
+
+    private final String name;
+
+    private final boolean enabled;
+
+    private final Cache<Long, Val> entries;
+
+    /*
+     * Incremented by each invalidation. A value loaded while an invalidation
+     * happened may already be outdated and is not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param name        the name of the cache, used for reporting
+     * @param enabled     if false, all values are loaded on each access
+     * @param timeToLive  the time after which an entry expires
+     * @param maximumSize the maximal number of cached patients
+     */
+    public PatientAttributeCache(String name, boolean enabled, Duration timeToLive, int maximumSize) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("The maximum size of the cache must be positive.");
+        this.name    = name;
+        this.enabled = enabled;
+        this.entries = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeToLive).recordStats()
+                .build();
+    }
+
+    /**
+     * The value is not loaded with Cache.get(key, loader), as errors are not
+     * cached and a value loaded during an invalidation is dropped.
+     *
+     * @param patientId the id of the patient
+     * @param loader    loads the value, if it is not cached
+     * @return the cached or loaded value
+     */
+    public Val get(Long patientId, Function<Long, Val> loader) {
+        if (!enabled)
+            return loader.apply(patientId);
+        var cached = entries.getIfPresent(patientId);
+        if (cached != null)
+            return cached;
+        var generationBeforeLoad = generation.get();
+        var value                = loader.apply(patientId);
+        if (value.isError() || generation.get() != generationBeforeLoad)
+            return value;
+        entries.put(patientId, value);
+        if (generation.get() != generationBeforeLoad)
+            entries.asMap().remove(patientId, value);
+        return value;
+    }
+
+    /**
+     * @param patientId the id of the changed patient
+     */
+    public void invalidate(Long patientId) {
+        generation.incrementAndGet();
+        entries.invalidate(patientId);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    /**
+     * @return a snapshot of the metrics of the cache, as recorded by Caffeine
+     */
+    public Statistics statistics() {
+        var stats = entries.stats();
+        return new Statistics(name, stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                entries.estimatedSize());
+    }
+
+    /**
+     * A snapshot of the metrics of the cache. A disabled cache records no
+     * accesses.
+     *
+     * @param name      the name of the cache
+     * @param hits      the number of values served from the cache
+     * @param misses    the number of values loaded
+     * @param evictions the number of entries evicted due to the size bound or
+     *                  the time-to-live
+     * @param size      the estimated number of entries
+     */
+    public record Statistics(String name, long hits, long misses, long evictions, long size) {
+
+        /**
+         * @return the ratio of hits to all accesses
+         */
+        public double hitRate() {
+            var accesses = hits + misses;
+            return accesses == 0 ? 0.0D : (double) hits / accesses;
+        }
+
+    }
+
+}
@@ -15,10 +15,15 @@
  */
 package io.sapl.mvc.demo.pip;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -28,10 +33,17 @@
 import io.sapl.api.pip.Attribute;
 import io.sapl.api.pip.PolicyInformationPoint;
 import io.sapl.api.validation.Number;
+import io.sapl.api.validation.Text;
 import io.sapl.mvc.demo.domain.Patient;
+import io.sapl.mvc.demo.domain.PatientChangedEvent;
 import io.sapl.mvc.demo.domain.Relation;
-import lombok.RequiredArgsConstructor;
+import io.sapl.mvc.demo.domain.RelationsChangedEvent;
+import io.sapl.server.lt.AttributeInstrumentation;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitFailureHandler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * This class realizes a custom Policy Information Point (PIP) which can
@@ -41,18 +53,60 @@
  *
  * As it is registered as a Spring @Service, the embedded Spring SAPL PDP will
  * pick it up automatically during the auto-configuration process.
+ *
+ * Policies access the same attributes of the same patients many times per page.
+ * Thus, the attributes are cached. The caches are invalidated whenever the
+ * PatientRepository or RelationRepository change the data of a patient.
+ *
+ * The attributes are streaming. All subscriptions to the same attribute of the
+ * same patient share one stream, which emits the current value and reloads it
+ * after each change of the patient. Thus, enforcement points keeping their
+ * subscriptions open learn about changes, e.g., a new attending doctor.
+ *
+ * The attributes are instrumented with the AttributeInstrumentation of the
+ * sapl-demo-extension module. It reports subscriptions, values, errors, the
+ * time to the first value and the running shared streams per attribute.
  */
 @Service
-@RequiredArgsConstructor
 @PolicyInformationPoint(name = "patient", description = "retrieves information about patients")
 public class PatientPIP {
 
+    private static final EmitFailureHandler EMIT_FAILURE_HANDLER = EmitFailureHandler
+            .busyLooping(Duration.ofSeconds(1));
+
     private final ObjectMapper mapper;
 
     private final PIPRelationRepository relationRepo;
 
     private final PIPPatientRepository patientRepo;
 
+    private final PatientAttributeCache relativesCache;
+
+    private final PatientAttributeCache patientRecordCache;
+
+    private final Map<Long, Flux<Val>> relativesStreams = new ConcurrentHashMap<>();
+
+    private final Map<Long, Flux<Val>> patientRecordStreams = new ConcurrentHashMap<>();
+
+    private final Map<Membership, Flux<Val>> membershipStreams = new ConcurrentHashMap<>();
+
+    private final AttributeInstrumentation instrumentation = new AttributeInstrumentation();
+
+    private final Sinks.Many<PatientChangedEvent> patientChanges = Sinks.many().multicast().directBestEffort();
+
+    private final Sinks.Many<RelationsChangedEvent> relationsChanges = Sinks.many().multicast().directBestEffort();
+
+    public PatientPIP(ObjectMapper mapper, PIPRelationRepository relationRepo, PIPPatientRepository patientRepo,
+            PatientPIPProperties properties) {
+        this.mapper             = mapper;
+        this.relationRepo       = relationRepo;
+        this.patientRepo        = patientRepo;
+        this.relativesCache     = new PatientAttributeCache("patient.relatives", properties.cacheEnabled(),
+                properties.cacheTimeToLive(), properties.cacheMaximumSize());
+        this.patientRecordCache = new PatientAttributeCache("patient.patientRecord", properties.cacheEnabled(),
+                properties.cacheTimeToLive(), properties.cacheMaximumSize());
+    }
+
     /**
      * This attribute is accessed in a SAPL policy through an expression like this:
      *
@@ -64,21 +118,53 @@ public class PatientPIP {
      * 'patient.relatives' Import statements in a policy can be used to provide a
      * shorthand in the policy.
      *
-     * This implementation does not track changes in the repository, i.e. this is a
-     * non-streaming PIP.
+     * This implementation tracks changes in the repository, i.e. this is a
+     * streaming PIP. The relatives are served from a cache.
      * 
      * @param value     the id of the patient. This parameter must be a number, as
      *                  defined by the @Number annotation.
      * @param variables the variables in the current evaluation context
-     * @return the relatives of the patient as registered in the relationRepo.
+     * @return the relatives of the patient as registered in the relationRepo,
+     *         updated whenever they change.
      *
      */
     @Attribute(name = "relatives")
     public Flux<Val> getRelations(@Number Val leftHandValue, Map<String, Val> variables) {
-        final List<Relation> relations     = relationRepo.findByPatientId(leftHandValue.get().asLong());
-        final List<String>   relationNames = relations.stream().map(Relation::getUsername).toList();
-        final JsonNode       jsonNode      = mapper.convertValue(relationNames, JsonNode.class);
-        return Flux.just(Val.of(jsonNode));
+        return shared(relativesStreams, "patient.relatives", leftHandValue.get().asLong(),
+                patientId -> relationsChanges.asFlux()
+                        .filter(event -> event.patientId() == null || patientId.equals(event.patientId())),
+                patientId -> relativesCache.get(patientId, this::loadRelations));
+    }
+
+    /**
+     * This attribute is accessed in a SAPL policy through an expression like this:
+     *
+     * resource.patientId.<patient.isRelative(subject.name)>
+     *
+     * In contrast to testing the membership in the relatives, i.e., subject.name
+     * in resource.patientId.<patient.relatives>, the list of relatives is not
+     * loaded and not searched by the policy. The membership is looked up with a
+     * single indexed query, regardless of the size of the family.
+     *
+     * This implementation tracks changes in the repository, i.e. this is a
+     * streaming PIP.
+     *
+     * @param patientId the id of the patient. This parameter must be a number, as
+     *                  defined by the @Number annotation.
+     * @param variables the variables in the current evaluation context
+     * @param username  the name of the user. This parameter must be a text, as
+     *                  defined by the @Text annotation.
+     * @return true, if the user is registered as a relative of the patient,
+     *         updated whenever the relatives change.
+     */
+    @Attribute(name = "isRelative")
+    public Flux<Val> isRelative(@Number Val patientId, Map<String, Val> variables, @Text Val username) {
+        return shared(membershipStreams, "patient.isRelative",
+                new Membership(patientId.get().asLong(), username.getText()),
+                membership -> relationsChanges.asFlux().filter(
+                        event -> event.patientId() == null || membership.patientId().equals(event.patientId())),
+                membership -> Val.of(
+                        relationRepo.existsByPatientIdAndUsername(membership.patientId(), membership.username())));
     }
 
     /**
@@ -92,24 +178,120 @@ public Flux<Val> getRelations(@Number Val leftHandValue, Map<String, Val> variab
      * 'patient.patientRecord' Import statements in a policy can be used to provide
      * a shorthand in the policy.
      *
-     * This implementation does not track changes in the repository, i.e. this is a
-     * non-streaming PIP.
+     * This implementation tracks changes in the repository, i.e. this is a
+     * streaming PIP. The record is served from a cache.
      * 
      * @param patientId the id of the patient. This parameter must be a number, as
      *                  defined by the @Number annotation.
      * @param variables the variables in the current evaluation context
-     * @return the patient record or null. This is a Flux containing only one value.
+     * @return the patient record or null, updated whenever the record changes.
      *
      */
     @Attribute(name = "patientRecord")
     public Flux<Val> getPatientRecord(@Number Val patientId, Map<String, Val> variables) {
+        return shared(patientRecordStreams, "patient.patientRecord", patientId.get().asLong(),
+                id -> patientChanges.asFlux().filter(event -> id.equals(event.patientId())),
+                id -> patientRecordCache.get(id, this::loadPatientRecord));
+    }
+
+    /**
+     * @return the metrics of the attribute caches
+     */
+    public List<PatientAttributeCache.Statistics> cacheStatistics() {
+        return List.of(relativesCache.statistics(), patientRecordCache.statistics());
+    }
+
+    /**
+     * @return the metrics of the attribute streams
+     */
+    public List<AttributeInstrumentation.Statistics> attributeStatistics() {
+        return instrumentation.statistics();
+    }
+
+    /**
+     * @return the number of currently shared attribute streams
+     */
+    public int activeStreams() {
+        return relativesStreams.size() + patientRecordStreams.size() + membershipStreams.size();
+    }
+
+    /**
+     * Invalidates the cached record once the change of the patient is committed
+     * and notifies the streams of the patient.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event) {
+        patientRecordCache.invalidate(event.patientId());
+        patientChanges.emitNext(event, EMIT_FAILURE_HANDLER);
+    }
+
+    /**
+     * Invalidates the cached relatives once the change of the relations is
+     * committed.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRelationsChanged(RelationsChangedEvent event) {
+        if (event.patientId() == null)
+            relativesCache.invalidateAll();
+        else
+            relativesCache.invalidate(event.patientId());
+        relationsChanges.emitNext(event, EMIT_FAILURE_HANDLER);
+    }
+
+    /**
+     * Returns the shared stream of an attribute of the patient. The stream is
+     * started with the first subscriber, loads the value once per change,
+     * replays the last value to later subscribers and only emits changed values.
+     * It is stopped once the last subscriber cancels.
+     *
+     * @param <K>           the type of the key identifying the attribute, e.g.,
+     *                      the id of the patient
+     * @param streams       the streams of the attribute
+     * @param attributeName the name of the attribute, for the instrumentation
+     * @param key           the key of the attribute
+     * @param changes       the changes affecting the attribute
+     * @param load          loads the attribute
+     * @return the shared attribute stream
+     */
+    private <K> Flux<Val> shared(Map<K, Flux<Val>> streams, String attributeName, K key,
+            Function<K, Flux<?>> changes, Function<K, Val> load) {
+        return instrumentation.instrument(attributeName, Flux.defer(() -> streams.computeIfAbsent(key, id -> {
+            var stream = new AtomicReference<Flux<Val>>();
+            /*
+             * The repositories are blocking. Changes are signaled on the thread
+             * committing the change. Thus, loading is moved to a scheduler for
+             * blocking work.
+             */
+            stream.set(instrumentation
+                    .upstream(attributeName,
+                            Flux.concat(Mono.just(id), changes.apply(id).map(event -> id))
+                                    .publishOn(Schedulers.boundedElastic()).map(load).distinctUntilChanged())
+                    .doFinally(signal -> streams.remove(id, stream.get())).replay(1).refCount());
+            return stream.get();
+        })));
+    }
+
+    private record Membership(Long patientId, String username) {
+    }
+
+    private Val loadRelations(Long patientId) {
+        final List<Relation> relations     = relationRepo.findByPatientId(patientId);
+        final List<String>   relationNames = relations.stream().map(Relation::getUsername).toList();
+        final JsonNode       jsonNode      = mapper.convertValue(relationNames, JsonNode.class);
+        return Val.of(jsonNode);
+    }
+
+    private Val loadPatientRecord(Long patientId) {
         try {
-            final Patient  patient  = patientRepo.findById(patientId.get().asLong())
-                    .orElseThrow(PolicyEvaluationException::new);
+            final Patient  patient  = patientRepo.findById(patientId).orElseThrow(PolicyEvaluationException::new);
             final JsonNode jsonNode = mapper.convertValue(patient, JsonNode.class);
-            return Flux.just(Val.of(jsonNode));
+            return Val.of(jsonNode);
         } catch (IllegalArgumentException | PolicyEvaluationException e) {
-            return Flux.just(Val.NULL);
+            return Val.NULL;
         }
     }
 
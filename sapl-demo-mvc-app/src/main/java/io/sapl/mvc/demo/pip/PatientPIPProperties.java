@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration of the caches of the PatientPIP.
+ *
+ * @param cacheEnabled     if false, each attribute lookup queries the database
+ * @param cacheTimeToLive  the time after which cached attributes expire
+ * @param cacheMaximumSize the maximal number of patients per cache
+ */
+@ConfigurationProperties(prefix = "demo.patient-pip")
+public record PatientPIPProperties(@DefaultValue("true") boolean cacheEnabled,
+        @DefaultValue("60s") Duration cacheTimeToLive, @DefaultValue("10000") int cacheMaximumSize) {
+}
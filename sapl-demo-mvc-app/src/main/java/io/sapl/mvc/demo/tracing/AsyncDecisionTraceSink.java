@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.tracing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.TracedDecision;
+import io.sapl.api.pdp.TracedDecisionInterceptor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes traces of sampled decisions to a file, one JSON object per line
+ * (NDJSON).
+ *
+ * The print-trace and print-*-report options of the embedded PDP build and log
+ * the traces of all decisions on the thread requesting the decision. This sink
+ * only decides on the requesting thread whether to trace a decision and hands
+ * it over to a bounded queue. A background thread builds the traces and writes
+ * them. If the writer cannot keep up and the queue is full, traces are dropped
+ * and counted instead of slowing down the application.
+ *
+ * As a TracedDecisionInterceptor bean, the embedded PDP picks the sink up
+ * automatically. It is only created if demo.decision-tracing.enabled is true.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "demo.decision-tracing", name = "enabled", havingValue = "true")
+public class AsyncDecisionTraceSink implements TracedDecisionInterceptor {
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final long POLL_INTERVAL_MS = 100L;
+
+    private final ObjectMapper mapper;
+
+    private final DecisionTracingProperties properties;
+
+    private final BlockingQueue<Trace> queue;
+
+    private final Thread writer;
+
+    private final LongAdder decisions = new LongAdder();
+
+    private final LongAdder sampled = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running = true;
+
+    public AsyncDecisionTraceSink(ObjectMapper mapper, DecisionTracingProperties properties) {
+        this.mapper     = mapper;
+        this.properties = properties;
+        this.queue      = new ArrayBlockingQueue<>(properties.capacity());
+        this.writer     = new Thread(this::drain, "decision-trace-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5L));
+    }
+
+    @Override
+    public Integer getPriority() {
+        // run after all other interceptors to trace the final decision
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public TracedDecision apply(TracedDecision tracedDecision) {
+        decisions.increment();
+        var decision = tracedDecision.getAuthorizationDecision().getDecision();
+        if (properties.alwaysTraced().contains(decision)
+                || ThreadLocalRandom.current().nextDouble() < properties.sampleRate()) {
+            sampled.increment();
+            if (!queue.offer(new Trace(Instant.now(), tracedDecision)))
+                dropped.increment();
+        }
+        return tracedDecision;
+    }
+
+    /**
+     * @return the counters of the sink
+     */
+    public Statistics statistics() {
+        return new Statistics(decisions.sum(), sampled.sum(), dropped.sum(), written.sum(), failed.sum(),
+                queue.size());
+    }
+
+    private void drain() {
+        var batch = new ArrayList<Trace>(BATCH_SIZE);
+        try (var out = Files.newBufferedWriter(properties.output(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (running || !queue.isEmpty()) {
+                var first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                write(out, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Writing decision traces to {} failed. Decision tracing stopped.", properties.output(), e);
+            running = false;
+        }
+    }
+
+    private void write(BufferedWriter out, List<Trace> batch) throws IOException {
+        for (var trace : batch) {
+            try {
+                var line = mapper.createObjectNode();
+                line.put("timestamp", trace.timestamp().toString());
+                line.put("decision", trace.tracedDecision().getAuthorizationDecision().getDecision().name());
+                line.set("trace", trace.tracedDecision().getTrace());
+                out.write(mapper.writeValueAsString(line));
+                out.newLine();
+                written.increment();
+            } catch (JsonProcessingException | RuntimeException e) {
+                // a single broken trace must not stop the writer
+                failed.increment();
+                log.debug("Serializing a decision trace failed.", e);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @param decisions all decisions passing the sink
+     * @param sampled   the decisions selected for tracing
+     * @param dropped   the sampled decisions not traced, as the queue was full
+     * @param written   the traces written to the output
+     * @param failed    the traces which could not be serialized
+     * @param queued    the traces currently waiting to be written
+     */
+    public record Statistics(long decisions, long sampled, long dropped, long written, long failed, int queued) {
+    }
+
+    private record Trace(Instant timestamp, TracedDecision tracedDecision) {
+    }
+
+}
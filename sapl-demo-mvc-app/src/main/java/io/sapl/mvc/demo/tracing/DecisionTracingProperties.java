@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.tracing;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import io.sapl.api.pdp.Decision;
+
+/**
+ * Configuration of the asynchronous decision tracing.
+ *
+ * @param enabled      if true, traces of sampled decisions are written to the
+ *                     output file
+ * @param output       the file the traces are appended to, one JSON object
+ *                     per line
+ * @param capacity     the maximal number of traces waiting to be written.
+ *                     Further traces are dropped.
+ * @param sampleRate   the fraction of decisions to trace, between 0.0 and 1.0
+ * @param alwaysTraced decisions which are traced regardless of the sample
+ *                     rate, e.g., DENY or INDETERMINATE in case of errors
+ */
+@ConfigurationProperties(prefix = "demo.decision-tracing")
+public record DecisionTracingProperties(@DefaultValue("false") boolean enabled,
+        @DefaultValue("decision-traces.ndjson") Path output, @DefaultValue("8192") int capacity,
+        @DefaultValue("0.01") double sampleRate,
+        @DefaultValue({ "DENY", "INDETERMINATE" }) Set<Decision> alwaysTraced) {
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.tracing.AsyncDecisionTraceSink;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the latency of rendering the patient page with the synchronous
+ * tracing and reporting of the embedded PDP and with the sampled, asynchronous
+ * AsyncDecisionTraceSink. The benchmarks are not executed by the regular
+ * build. Run them with: mvn test -Dtest=DecisionTracingBenchmarkIT
+ */
+@Slf4j
+class DecisionTracingBenchmarkIT {
+
+    private static final int WARM_UP_RUNS = 100;
+
+    private static final int RUNS = 1_000;
+
+    @Nested
+    @DirtiesContext
+    @AutoConfigureMockMvc
+    @SpringBootTest(classes = MvcDemoApplication.class,
+            properties = { "io.sapl.pdp.embedded.print-trace=true", "io.sapl.pdp.embedded.print-json-report=true",
+                    "io.sapl.pdp.embedded.print-text-report=true", "demo.decision-tracing.enabled=false",
+                    // the traces and reports are logged on info level
+                    "logging.level.io.sapl.pdp=info" })
+    class SynchronousTracing {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        UserDetailsService userDetailsService;
+
+        @Test
+        void when_renderingPatientPage_then_reportLatencyWithSynchronousTracing() {
+            measure("Patient page with synchronous tracing and reports", mockMvc, authenticate(userDetailsService));
+        }
+
+    }
+
+    @Nested
+    @DirtiesContext
+    @AutoConfigureMockMvc
+    @SpringBootTest(classes = MvcDemoApplication.class,
+            properties = { "io.sapl.pdp.embedded.print-trace=false", "io.sapl.pdp.embedded.print-json-report=false",
+                    "io.sapl.pdp.embedded.print-text-report=false", "demo.decision-tracing.enabled=true" })
+    class AsynchronousTracing {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        UserDetailsService userDetailsService;
+
+        @Autowired
+        AsyncDecisionTraceSink sink;
+
+        @Test
+        void when_renderingPatientPage_then_reportLatencyWithAsynchronousTracing() {
+            measure("Patient page with sampled asynchronous tracing", mockMvc, authenticate(userDetailsService));
+            var statistics = sink.statistics();
+            log.info("Decisions {}, sampled {}, dropped {}, written {}, failed {}, queued {}",
+                    statistics.decisions(), statistics.sampled(), statistics.dropped(), statistics.written(),
+                    statistics.failed(), statistics.queued());
+            assertThat(statistics.sampled()).isPositive();
+        }
+
+    }
+
+    private static Authentication authenticate(UserDetailsService userDetailsService) {
+        var user = userDetailsService.loadUserByUsername("Julia");
+        return new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities());
+    }
+
+    @SneakyThrows
+    private static void render(MockMvc mockMvc, Authentication user, MockHttpSession session) {
+        mockMvc.perform(get("/patients/1").with(authentication(user)).session(session)).andExpect(status().isOk());
+    }
+
+    private static void measure(String title, MockMvc mockMvc, Authentication user) {
+        // ends the subscriptions of the UI decisions cached in the session afterwards
+        var session     = new MockHttpSession();
+        var measurement = Measurement.measure(WARM_UP_RUNS, RUNS, () -> render(mockMvc, user, session));
+        session.invalidate();
+        log.info("{}: mean {}ms, p99 {}ms", title, measurement.meanMs(), measurement.p99Ms());
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * The latency of an operation measured by a benchmark. The operation is run a
+ * number of times for warm-up first, then the latency of each further run is
+ * recorded.
+ *
+ * @param meanMs      the mean latency in milliseconds
+ * @param p99Ms       the 99th percentile of the latency in milliseconds
+ * @param maxMs       the maximal latency in milliseconds
+ * @param countPerRun the mean increase of a counter per measured run, e.g., of
+ *                    the SQL statements
+ */
+record Measurement(double meanMs, double p99Ms, double maxMs, double countPerRun) {
+
+    private static final double MILLION = 1_000_000.0D;
+
+    /**
+     * @param warmUpRuns the runs before the measurement
+     * @param runs       the measured runs
+     * @param run        the operation to measure
+     * @return the latency of the measured runs
+     */
+    static Measurement measure(int warmUpRuns, int runs, Runnable run) {
+        return measure(warmUpRuns, runs, () -> 0L, run);
+    }
+
+    /**
+     * @param warmUpRuns the runs before the measurement
+     * @param runs       the measured runs
+     * @param counter    a counter increased by the operation, read before and
+     *                   after the measured runs
+     * @param run        the operation to measure
+     * @return the latency of the measured runs and the increase of the counter
+     */
+    static Measurement measure(int warmUpRuns, int runs, LongSupplier counter, Runnable run) {
+        for (int i = 0; i < warmUpRuns; i++) {
+            run.run();
+        }
+        var countBefore = counter.getAsLong();
+        var latencies   = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            run.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+        var count = counter.getAsLong() - countBefore;
+        Arrays.sort(latencies);
+        var mean = Arrays.stream(latencies).average().orElse(0.0D);
+        return new Measurement(mean / MILLION, latencies[(int) Math.ceil(runs * 0.99D) - 1] / MILLION,
+                latencies[runs - 1] / MILLION, (double) count / runs);
+    }
+
+}
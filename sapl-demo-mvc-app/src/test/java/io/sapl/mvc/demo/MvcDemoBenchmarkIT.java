@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.mvc.demo.controller.UIElementAuthorization;
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.PatientChangedEvent;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import io.sapl.mvc.demo.domain.RelationsChangedEvent;
+import io.sapl.mvc.demo.pip.PatientPIP;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+
+/**
+ * Benchmarks of the page rendering of the demo application. The benchmarks are
+ * not executed by the regular build. Run them with: mvn test
+ * -Dtest=MvcDemoBenchmarkIT
+ */
+@Slf4j
+@DirtiesContext
+@AutoConfigureMockMvc
+@SpringBootTest(classes = MvcDemoApplication.class,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class MvcDemoBenchmarkIT {
+
+    private static final int WARM_UP_RUNS = 100;
+
+    private static final int RUNS = 1_000;
+
+    private static final int SUBSCRIBERS = 100;
+
+    private static final int CHANGES = 10;
+
+    private static final int SESSIONS_PER_USER = 10;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @Autowired
+    PatientPIP patientPIP;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    UIElementAuthorization uiAuthorization;
+
+    @Autowired
+    PolicyDecisionPoint pdp;
+
+    // ends the subscriptions of the UI decisions cached in the session
+    final MockHttpSession session = new MockHttpSession();
+
+    @AfterEach
+    void invalidateSession() {
+        session.invalidate();
+    }
+
+    @Test
+    void when_renderingPatientPage_then_reportLatencyWithAndWithoutPIPCache() {
+        var doctor = authenticate("Julia");
+
+        var uncached = measure(() -> {
+            publisher.publishEvent(new PatientChangedEvent(1L));
+            publisher.publishEvent(new RelationsChangedEvent(null));
+            render("/patients/1", doctor);
+        });
+        var cached   = measure(() -> render("/patients/1", doctor));
+
+        report("Patient page without PatientPIP cache", uncached);
+        report("Patient page with PatientPIP cache", cached);
+        patientPIP.cacheStatistics().forEach(statistics -> log.info("{}: hits {}, misses {}, hit rate {}",
+                statistics.name(), statistics.hits(), statistics.misses(), statistics.hitRate()));
+        assertThat(cached.countPerRun()).isLessThan(uncached.countPerRun());
+    }
+
+    @Test
+    @SneakyThrows
+    void when_manySubscriptionsToPatientRecord_then_reportQueriesOfSharedStreams() {
+        SecurityContextHolder.getContext().setAuthentication(authenticate("Julia"));
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        var received      = new CountDownLatch(SUBSCRIBERS * (1 + CHANGES));
+        var subscriptions = IntStream.range(0, SUBSCRIBERS).mapToObj(i -> patientPIP
+                .getPatientRecord(Val.of(1L), Map.of()).subscribe(value -> received.countDown())).toList();
+        var originalPhoneNumber = patientRepository.findById(1L).orElseThrow().getPhoneNumber();
+        for (int i = 0; i < CHANGES; i++) {
+            patientRepository.updatePhoneNumberById("+78(0)456-" + i, 1L);
+            // let the shared stream reload before the next change
+            Thread.sleep(50L);
+        }
+        var completed = received.await(10, TimeUnit.SECONDS);
+        subscriptions.forEach(Disposable::dispose);
+        patientRepository.updatePhoneNumberById(originalPhoneNumber, 1L);
+
+        // the updates themselves and the lookup of the original phone number
+        var queries = statistics.getPrepareStatementCount() - CHANGES - 1;
+        log.info("{} subscribers, {} changes: {} queries with shared streams, {} with a query per subscriber and "
+                + "change", SUBSCRIBERS, CHANGES, queries, SUBSCRIBERS * (1 + CHANGES));
+        assertThat(completed).isTrue();
+        assertThat(queries).isLessThan(SUBSCRIBERS);
+    }
+
+    @Test
+    void when_renderingUpdatePatientView_then_reportPdpRequestsAndLatencyOfBatchedUIChecks() {
+        var doctor   = authenticate("Julia");
+        var elements = List.of("ui:view:patients:diagnosisField", "ui:view:patients:icd11Field",
+                "ui:view:patients:doctorField", "ui:view:patients:nurseField");
+
+        var oneDecisionPerElement = measure(() -> elements.forEach(element -> pdp
+                .decide(AuthorizationSubscription.of(doctor, "edit", element)).blockFirst()));
+        var batched               = measure(() -> {
+                                      var checks = uiAuthorization.forSubject(doctor);
+                                      elements.forEach(element -> checks.check(element, "edit", element));
+                                      checks.decide();
+                                  });
+        report("UI checks of the update view with one decision per element", oneDecisionPerElement);
+        report("UI checks of the update view in one multi-subscription", batched);
+
+        var requestsBefore = uiAuthorization.pdpRequests();
+        var page           = measure(() -> render("/patients/1/update", doctor));
+        report("Update patient view", page);
+        log.info("PDP requests for UI checks per page: {} instead of {}",
+                (double) (uiAuthorization.pdpRequests() - requestsBefore) / (WARM_UP_RUNS + RUNS), elements.size());
+    }
+
+    @Test
+    void when_manyUsersBrowsePatients_then_reportHitRateOfSessionUIDecisionCache() {
+        var random   = new Random(42L);
+        var urls     = List.of("/patients", "/patients/1", "/patients/2", "/patients/1/update", "/patients/2/update");
+        var sessions = new ArrayList<MockHttpSession>();
+        var users    = new ArrayList<Authentication>();
+        for (var username : List.of("Julia", "Peter", "Alina", "Thomas", "Brigitte", "Janosch", "Janina")) {
+            for (int i = 0; i < SESSIONS_PER_USER; i++) {
+                users.add(authenticate(username));
+                sessions.add(new MockHttpSession());
+            }
+        }
+
+        var checksBefore   = uiAuthorization.checks();
+        var requestsBefore = uiAuthorization.pdpRequests();
+        var hitsBefore     = uiAuthorization.cacheHits();
+        var pages          = measure(() -> {
+                               var user = random.nextInt(users.size());
+                               renderAny(urls.get(random.nextInt(urls.size())), users.get(user), sessions.get(user));
+                           });
+        sessions.forEach(MockHttpSession::invalidate);
+
+        var checks   = uiAuthorization.checks() - checksBefore;
+        var requests = uiAuthorization.pdpRequests() - requestsBefore;
+        var hits     = uiAuthorization.cacheHits() - hitsBefore;
+        report(users.size() + " sessions browsing patients", pages);
+        log.info("UI checks {}, answered from session caches {} (hit rate {}), PDP requests {}, PDP requests saved {}",
+                checks, hits, (double) hits / checks, requests, hits);
+        assertThat(hits).isPositive();
+    }
+
+    @Test
+    void when_submittingUpdatePatientForm_then_reportDecisionsStatementsAndLatencyOfSingleUpdate() {
+        SecurityContextHolder.getContext().setAuthentication(authenticate("Julia"));
+        // submit the current values, so that all fields are updated without changing the patient
+        var patient = patientRepository.findById(1L).orElseThrow();
+        var changes = new LinkedHashMap<String, String>();
+        changes.put("name", patient.getName());
+        changes.put("diagnosisText", patient.getDiagnosisText());
+        changes.put("icd11Code", patient.getIcd11Code());
+        changes.put("phoneNumber", patient.getPhoneNumber());
+        changes.put("roomNumber", patient.getRoomNumber());
+        changes.put("attendingDoctor", patient.getAttendingDoctor());
+        changes.put("attendingNurse", patient.getAttendingNurse());
+
+        var updatePerField = measure(() -> {
+            patientRepository.updateNameById(patient.getName(), 1L);
+            patientRepository.updateDiagnosisTextById(patient.getDiagnosisText(), 1L);
+            patientRepository.updateIcd11CodeById(patient.getIcd11Code(), 1L);
+            patientRepository.updatePhoneNumberById(patient.getPhoneNumber(), 1L);
+            patientRepository.updateRoomNumberById(patient.getRoomNumber(), 1L);
+            patientRepository.updateAttendingDoctorById(patient.getAttendingDoctor(), 1L);
+            patientRepository.updateAttendingNurseById(patient.getAttendingNurse(), 1L);
+        });
+        var singleUpdate   = measure(() -> patientRepository.updateFieldsById(1L, changes));
+        report("Update form with one decision and statement per field (" + changes.size() + " decisions)",
+                updatePerField);
+        report("Update form with one decision and statement for all fields (1 decision)", singleUpdate);
+        assertThat(singleUpdate.countPerRun()).isLessThan(updatePerField.countPerRun());
+    }
+
+    private Authentication authenticate(String username) {
+        var user = userDetailsService.loadUserByUsername(username);
+        return new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities());
+    }
+
+    @SneakyThrows
+    private void render(String url, Authentication user) {
+        mockMvc.perform(get(url).with(authentication(user)).session(session)).andExpect(status().isOk());
+    }
+
+    /*
+     * Not all users may see all pages, e.g., nurses may not update all fields.
+     */
+    @SneakyThrows
+    private void renderAny(String url, Authentication user, MockHttpSession session) {
+        mockMvc.perform(get(url).with(authentication(user)).session(session));
+    }
+
+    private Measurement measure(Runnable run) {
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Measurement.measure(WARM_UP_RUNS, RUNS, statistics::getPrepareStatementCount, run);
+    }
+
+    private static void report(String title, Measurement measurement) {
+        log.info("{}: mean {}ms, p99 {}ms, SQL statements per page {}", title, measurement.meanMs(),
+                measurement.p99Ms(), measurement.countPerRun());
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmarks of the patient list with 10k, 100k and 1M patients. Compares
+ * loading all patients with the keyset pagination and the stream of the
+ * PatientRepository. The benchmarks are not executed by the regular build. Run
+ * them with: mvn test -Dtest=PatientListBenchmarkIT
+ */
+@Slf4j
+@DirtiesContext
+@AutoConfigureMockMvc
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PatientListBenchmarkIT {
+
+    private static final int[] PATIENTS = { 10_000, 100_000, 1_000_000 };
+
+    private static final int WARM_UP_RUNS = 5;
+
+    private static final int RUNS = 20;
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int BATCH_SIZE = 10_000;
+
+    // far above the ids generated for the demo data
+    private static final long FIRST_ID = 1_000_000_000L;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    // ends the subscriptions of the UI decisions cached in the session
+    final MockHttpSession session = new MockHttpSession();
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void invalidateSession() {
+        session.invalidate();
+    }
+
+    @Test
+    void when_listingPatients_then_reportLatencyOfFullListSliceAndStream() {
+        var user = userDetailsService.loadUserByUsername("Julia");
+        var doctor = new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD,
+                user.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(doctor);
+
+        var inserted = 0;
+        for (var patients : PATIENTS) {
+            insertPatients(inserted, patients);
+            inserted = patients;
+            var middle = FIRST_ID + patients / 2;
+
+            measure(patients + " patients, findAll()", () -> patientRepository.findAll().size());
+            measure(patients + " patients, first slice",
+                    () -> patientRepository.findByIdGreaterThan(Long.MIN_VALUE, firstPage()).getNumberOfElements());
+            measure(patients + " patients, slice in the middle",
+                    () -> patientRepository.findByIdGreaterThan(middle, firstPage()).getNumberOfElements());
+            measure(patients + " patients, first " + PAGE_SIZE + " of streamAll()",
+                    () -> transactionTemplate.execute(status -> {
+                        try (var stream = patientRepository.streamAll()) {
+                            return stream.limit(PAGE_SIZE).count();
+                        }
+                    }));
+            measure(patients + " patients, rendering the first page", () -> render("/patients", doctor));
+            measure(patients + " patients, rendering a page in the middle",
+                    () -> render("/patients?after=" + middle, doctor));
+        }
+        assertThat(patientRepository.findByIdGreaterThan(FIRST_ID, firstPage()).getNumberOfElements())
+                .isEqualTo(PAGE_SIZE);
+    }
+
+    private static PageRequest firstPage() {
+        return PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+    }
+
+    private void insertPatients(int from, int to) {
+        for (int batchStart = from; batchStart < to; batchStart += BATCH_SIZE) {
+            var batch = new ArrayList<Object[]>(BATCH_SIZE);
+            for (int i = batchStart; i < Math.min(batchStart + BATCH_SIZE, to); i++) {
+                batch.add(new Object[] { FIRST_ID + i, "MRN-" + i, "Patient " + i, "DA63.Z",
+                        "Duodenal ulcer", "Julia", "Thomas", "+78(0)456-789", "A.3.47" });
+            }
+            jdbcTemplate.batchUpdate("insert into patient (id, medical_record_number, name, icd11code, "
+                    + "diagnosis_text, attending_doctor, attending_nurse, phone_number, room_number) "
+                    + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)", batch);
+        }
+    }
+
+    @SneakyThrows
+    private long render(String url, Authentication user) {
+        return mockMvc.perform(get(url).with(authentication(user)).session(session)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentLength();
+    }
+
+    private static void measure(String title, LongSupplier run) {
+        var measurement = Measurement.measure(WARM_UP_RUNS, RUNS, run::getAsLong);
+        log.info("{}: mean {}ms, max {}ms", title, measurement.meanMs(), measurement.maxMs());
+    }
+
+}
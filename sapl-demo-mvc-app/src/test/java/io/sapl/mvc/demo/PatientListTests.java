@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.Patient;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import lombok.SneakyThrows;
+
+/**
+ * Tests of the keyset pagination and the stream of the patient list, i.e.,
+ * PatientRepository.findByIdGreaterThan and PatientRepository.streamAll, and
+ * of the paging of the patient list view along nextPageAfter.
+ */
+@DirtiesContext
+@AutoConfigureMockMvc
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PatientListTests {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_authenticated_then_sliceAndStreamPermitted() {
+        authenticate("Julia");
+
+        var slice    = patientRepository.findByIdGreaterThan(Long.MIN_VALUE, PageRequest.of(0, 1, Sort.by("id")));
+        var streamed = transactionTemplate
+                .execute(status -> patientRepository.streamAll().map(Patient::getId).toList());
+
+        assertThat(slice.getContent()).hasSize(1);
+        assertThat(streamed).isEqualTo(allIds());
+    }
+
+    @Test
+    void when_anonymous_then_sliceAndStreamDenied() {
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken("key", "anonymous",
+                AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        var firstPage = PageRequest.of(0, 1, Sort.by("id"));
+        assertThatThrownBy(() -> patientRepository.findByIdGreaterThan(Long.MIN_VALUE, firstPage))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> transactionTemplate.execute(status -> patientRepository.streamAll().toList()))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void when_slicesFollowLastId_then_consecutiveSlicesCoverAllPatients() {
+        authenticate("Julia");
+
+        var ids   = new ArrayList<Long>();
+        var after = Long.MIN_VALUE;
+        while (true) {
+            var slice = patientRepository.findByIdGreaterThan(after, PageRequest.of(0, 1, Sort.by("id")));
+            slice.forEach(patient -> ids.add(patient.getId()));
+            if (!slice.hasNext())
+                break;
+            after = slice.getContent().get(slice.getNumberOfElements() - 1).getId();
+        }
+
+        assertThat(ids).isEqualTo(allIds());
+    }
+
+    @Test
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    void when_patientListFollowsNextPageAfter_then_pagesAreConsecutive() {
+        authenticate("Julia");
+        for (var i = 0; i < PAGE_SIZE + 10; i++)
+            patientRepository.save(new Patient(null, "P-" + i, "Patient " + i, "DA63.Z/ME24.90", "Page test", "Julia",
+                    "Thomas", "+78(0)456-000", "A.1." + i));
+        var julia = userDetailsService.loadUserByUsername("Julia");
+
+        var ids   = new ArrayList<Long>();
+        var pages = 0;
+
+        Long after = null;
+        do {
+            var request = get("/patients").with(user(julia));
+            if (after != null)
+                request = request.param("after", after.toString());
+            var model = mockMvc.perform(request).andReturn().getModelAndView().getModel();
+            ((List<Patient>) model.get("patients")).forEach(patient -> ids.add(patient.getId()));
+            after = (Long) model.get("nextPageAfter");
+            pages++;
+        } while (after != null);
+
+        assertThat(pages).isGreaterThan(1);
+        assertThat(ids).isEqualTo(allIds());
+    }
+
+    private List<Long> allIds() {
+        return patientRepository.findAll().stream().map(Patient::getId).sorted().toList();
+    }
+
+    private void authenticate(String username) {
+        var user = userDetailsService.loadUserByUsername(username);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities()));
+    }
+
+}
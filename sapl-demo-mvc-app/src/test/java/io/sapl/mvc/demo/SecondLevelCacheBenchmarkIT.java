@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.tracing.AsyncDecisionTraceSink;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the database round-trips per decision of the PatientPIP with and
+ * without the second-level cache of Hibernate. The caches of the PatientPIP are
+ * disabled, so that each decision loads its attributes through the
+ * repositories of the PIP. The decisions are counted by the
+ * AsyncDecisionTraceSink. The benchmarks are not executed by the regular
+ * build. Run them with: mvn test -Dtest=SecondLevelCacheBenchmarkIT
+ */
+@Slf4j
+class SecondLevelCacheBenchmarkIT {
+
+    private static final int WARM_UP_RUNS = 100;
+
+    private static final int RUNS = 1_000;
+
+    private static final String DOCTOR = "Julia";
+
+    private static final String VISITOR = "Dominic";
+
+    @Nested
+    @DirtiesContext
+    @AutoConfigureMockMvc
+    @SpringBootTest(classes = MvcDemoApplication.class,
+            properties = { "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                    "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                    "spring.jpa.properties.hibernate.generate_statistics=true",
+                    "demo.patient-pip.cache-enabled=false", "demo.decision-tracing.sample-rate=0" })
+    class WithoutSecondLevelCache {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        UserDetailsService userDetailsService;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        AsyncDecisionTraceSink sink;
+
+        @Test
+        void when_renderingPatientPage_then_reportRoundTripsPerDecisionWithoutSecondLevelCache() {
+            var statistics = statistics(entityManagerFactory);
+            for (var username : new String[] { DOCTOR, VISITOR }) {
+                var roundTrips = measure(mockMvc, authenticate(userDetailsService, username), statistics, sink);
+                log.info("Patient page of {} without second-level cache: {} SQL statements per decision", username,
+                        roundTrips);
+                assertThat(roundTrips).isPositive();
+            }
+        }
+
+    }
+
+    @Nested
+    @DirtiesContext
+    @AutoConfigureMockMvc
+    @SpringBootTest(classes = MvcDemoApplication.class,
+            properties = { "spring.jpa.properties.hibernate.generate_statistics=true",
+                    "demo.patient-pip.cache-enabled=false", "demo.decision-tracing.sample-rate=0" })
+    class WithSecondLevelCache {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        UserDetailsService userDetailsService;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        AsyncDecisionTraceSink sink;
+
+        @Test
+        void when_renderingPatientPage_then_reportRoundTripsPerDecisionWithSecondLevelCache() {
+            var statistics = statistics(entityManagerFactory);
+            for (var username : new String[] { DOCTOR, VISITOR }) {
+                var roundTrips = measure(mockMvc, authenticate(userDetailsService, username), statistics, sink);
+                log.info("Patient page of {} with second-level cache: {} SQL statements per decision, "
+                        + "entity cache hits {}, query cache hits {}", username, roundTrips,
+                        statistics.getSecondLevelCacheHitCount(), statistics.getQueryCacheHitCount());
+                assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+            }
+        }
+
+    }
+
+    private static Statistics statistics(EntityManagerFactory entityManagerFactory) {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static Authentication authenticate(UserDetailsService userDetailsService, String username) {
+        var user = userDetailsService.loadUserByUsername(username);
+        return new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities());
+    }
+
+    @SneakyThrows
+    private static void render(MockMvc mockMvc, Authentication user, MockHttpSession session) {
+        mockMvc.perform(get("/patients/1").with(authentication(user)).session(session)).andExpect(status().isOk());
+    }
+
+    /**
+     * @return the SQL statements per decision
+     */
+    private static double measure(MockMvc mockMvc, Authentication user, Statistics statistics,
+            AsyncDecisionTraceSink sink) {
+        // ends the subscriptions of the UI decisions cached in the session afterwards
+        var session    = new MockHttpSession();
+        var statements = Measurement.measure(WARM_UP_RUNS, RUNS, statistics::getPrepareStatementCount,
+                () -> render(mockMvc, user, session));
+        var decisions  = Measurement.measure(0, RUNS, () -> sink.statistics().decisions(),
+                () -> render(mockMvc, user, session));
+        session.invalidate();
+        log.info("Patient page of {}: mean {}ms, p99 {}ms", user.getName(), statements.meanMs(), statements.p99Ms());
+        return statements.countPerRun() / decisions.countPerRun();
+    }
+
+}
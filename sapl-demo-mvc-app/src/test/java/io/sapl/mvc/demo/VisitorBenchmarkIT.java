@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.RelationsChangedEvent;
+import io.sapl.mvc.demo.pip.PatientPIP;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Benchmarks of the relatives check of visitors with many patients with large
+ * families. Compares searching the visitor in the relatives of the patient
+ * with the membership test of the isRelative attribute. The benchmarks are not
+ * executed by the regular build. Run them with: mvn test
+ * -Dtest=VisitorBenchmarkIT
+ */
+@Slf4j
+@DirtiesContext
+@AutoConfigureMockMvc
+@SpringBootTest(classes = MvcDemoApplication.class,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class VisitorBenchmarkIT {
+
+    private static final int PATIENTS = 1_000;
+
+    private static final int FAMILY_SIZE = 500;
+
+    private static final int WARM_UP_RUNS = 100;
+
+    private static final int RUNS = 1_000;
+
+    // far above the ids generated for the demo data
+    private static final long FIRST_ID = 1_000_000_000L;
+
+    private static final String VISITOR = "Dominic";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    // ends the subscriptions of the UI decisions cached in the session
+    final MockHttpSession session = new MockHttpSession();
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @Autowired
+    PatientPIP patientPIP;
+
+    @AfterEach
+    void invalidateSession() {
+        session.invalidate();
+    }
+
+    @Test
+    void when_visitorIsRelativeInLargeFamily_then_reportLatencyOfRelativesAndMembershipTest() {
+        insertPatientsWithFamilies();
+        var patientId = Val.of(FIRST_ID + PATIENTS / 2);
+        var visitor   = Val.of(VISITOR);
+
+        var relativesUncached = measure(() -> {
+            publisher.publishEvent(new RelationsChangedEvent(FIRST_ID + PATIENTS / 2));
+            return inRelatives(patientId);
+        });
+        var relativesCached   = measure(() -> inRelatives(patientId));
+        var membership        = measure(
+                () -> patientPIP.isRelative(patientId, Map.of(), visitor).blockFirst().getBoolean());
+        report("Visitor in <patient.relatives> without cache", relativesUncached);
+        report("Visitor in <patient.relatives> with cache", relativesCached);
+        report("<patient.isRelative(visitor)>", membership);
+
+        var user = userDetailsService.loadUserByUsername(VISITOR);
+        var auth = new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD,
+                user.getAuthorities());
+        var page = measure(() -> {
+            render("/patients/" + patientId.get().asLong(), auth);
+            return true;
+        });
+        report("Patient page of a relative", page);
+        assertThat(patientPIP.isRelative(patientId, Map.of(), visitor).blockFirst()).isEqualTo(Val.TRUE);
+    }
+
+    private boolean inRelatives(Val patientId) {
+        for (var relative : patientPIP.getRelations(patientId, Map.of()).blockFirst().get()) {
+            if (VISITOR.equals(relative.asText()))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * The visitor is the last relative of each family, i.e., the worst case for
+     * searching the relatives.
+     */
+    private void insertPatientsWithFamilies() {
+        var patients = new ArrayList<Object[]>(PATIENTS);
+        for (int i = 0; i < PATIENTS; i++) {
+            patients.add(new Object[] { FIRST_ID + i, "MRN-" + i, "Patient " + i, "DA63.Z", "Duodenal ulcer",
+                    "Julia", "Thomas", "+78(0)456-789", "A.3.47" });
+        }
+        jdbcTemplate.batchUpdate("insert into patient (id, medical_record_number, name, icd11code, diagnosis_text, "
+                + "attending_doctor, attending_nurse, phone_number, room_number) values (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                patients);
+        for (int i = 0; i < PATIENTS; i++) {
+            var family = new ArrayList<Object[]>(FAMILY_SIZE);
+            for (int j = 0; j < FAMILY_SIZE; j++) {
+                var username = j == FAMILY_SIZE - 1 ? VISITOR : "Relative " + j;
+                family.add(new Object[] { FIRST_ID + (long) i * FAMILY_SIZE + j, username, FIRST_ID + i });
+            }
+            jdbcTemplate.batchUpdate("insert into relation (id, username, patient_id) values (?, ?, ?)", family);
+        }
+    }
+
+    @SneakyThrows
+    private void render(String url, UsernamePasswordAuthenticationToken user) {
+        mockMvc.perform(get(url).with(authentication(user)).session(session)).andExpect(status().isOk());
+    }
+
+    private Measurement measure(BooleanSupplier run) {
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Measurement.measure(WARM_UP_RUNS, RUNS, statistics::getPrepareStatementCount, run::getAsBoolean);
+    }
+
+    private static void report(String title, Measurement measurement) {
+        log.info("{}: mean {}ms, p99 {}ms, SQL statements per run {}", title, measurement.meanMs(),
+                measurement.p99Ms(), measurement.countPerRun());
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class SessionUIDecisionsTests {
+
+    private static final AuthorizationSubscription UPDATE = AuthorizationSubscription.of("Julia", "use", "ui:update");
+
+    private static final AuthorizationSubscription DELETE = AuthorizationSubscription.of("Julia", "use", "ui:delete");
+
+    private static final AuthorizationSubscription CREATE = AuthorizationSubscription.of("Julia", "use", "ui:create");
+
+    private final List<Stream> streams = new ArrayList<>();
+
+    @Test
+    void when_viewHasSeveralMisses_then_oneMultiSubscriptionFeedsAll() {
+        var decisions = new SessionUIDecisions(8);
+
+        var lookup = decisions.subscribeAll(List.of(UPDATE, DELETE), this::decide);
+        streams.get(0).decide(UPDATE, AuthorizationDecision.PERMIT);
+        streams.get(0).decide(DELETE, AuthorizationDecision.DENY);
+
+        assertThat(streams).hasSize(1);
+        assertThat(lookup.misses()).isEqualTo(2);
+        assertThat(lookup.decisions().get(0).current()).isEqualTo(AuthorizationDecision.PERMIT);
+        assertThat(lookup.decisions().get(1).current()).isEqualTo(AuthorizationDecision.DENY);
+    }
+
+    @Test
+    void when_decisionsCached_then_noFurtherSubscription() {
+        var decisions = new SessionUIDecisions(8);
+        decisions.subscribeAll(List.of(UPDATE, DELETE), this::decide);
+
+        var lookup = decisions.subscribeAll(List.of(DELETE, UPDATE), this::decide);
+
+        assertThat(streams).hasSize(1);
+        assertThat(lookup.misses()).isZero();
+        assertThat(lookup.decisions()).containsExactly(decisions.get(DELETE), decisions.get(UPDATE));
+    }
+
+    @Test
+    void when_policyUpdateChangesDecision_then_cachedDecisionChanges() {
+        var decisions = new SessionUIDecisions(8);
+        var cached    = decisions.subscribeAll(List.of(UPDATE), this::decide).decisions().get(0);
+
+        streams.get(0).decide(UPDATE, AuthorizationDecision.PERMIT);
+        assertThat(cached.current()).isEqualTo(AuthorizationDecision.PERMIT);
+
+        streams.get(0).decide(UPDATE, AuthorizationDecision.DENY);
+        assertThat(cached.current()).isEqualTo(AuthorizationDecision.DENY);
+        assertThat(decisions.get(UPDATE).current()).isEqualTo(AuthorizationDecision.DENY);
+    }
+
+    @Test
+    void when_pdpFails_then_cachedDecisionIndeterminate() {
+        var decisions = new SessionUIDecisions(8);
+        var cached    = decisions.subscribeAll(List.of(UPDATE), this::decide).decisions().get(0);
+
+        streams.get(0).sink().tryEmitError(new IllegalStateException("PDP failed"));
+
+        assertThat(cached.current()).isEqualTo(AuthorizationDecision.INDETERMINATE);
+    }
+
+    @Test
+    void when_leastRecentlyUsedEvicted_then_itsSubscriptionIsCancelled() {
+        var decisions = new SessionUIDecisions(2);
+        decisions.subscribeAll(List.of(UPDATE), this::decide);
+        decisions.subscribeAll(List.of(DELETE), this::decide);
+        decisions.subscribeAll(List.of(UPDATE), this::decide);
+
+        decisions.subscribeAll(List.of(CREATE), this::decide);
+
+        assertThat(decisions.size()).isEqualTo(2);
+        assertThat(decisions.get(DELETE)).isNull();
+        assertThat(streams.get(0).cancelled()).isFalse();
+        assertThat(streams.get(1).cancelled()).isTrue();
+        assertThat(streams.get(2).cancelled()).isFalse();
+    }
+
+    @Test
+    void when_onlySomeDecisionsOfViewEvicted_then_sharedSubscriptionStaysOpen() {
+        var decisions = new SessionUIDecisions(2);
+        decisions.subscribeAll(List.of(UPDATE, DELETE), this::decide);
+
+        decisions.subscribeAll(List.of(CREATE), this::decide);
+        assertThat(streams.get(0).cancelled()).isFalse();
+
+        decisions.subscribeAll(List.of(AuthorizationSubscription.of("Julia", "use", "ui:other")), this::decide);
+        assertThat(streams.get(0).cancelled()).isTrue();
+    }
+
+    @Test
+    void when_sessionEnds_then_allSubscriptionsCancelled() {
+        var decisions = new SessionUIDecisions(8);
+        decisions.subscribeAll(List.of(UPDATE, DELETE), this::decide);
+        decisions.subscribeAll(List.of(CREATE), this::decide);
+
+        decisions.valueUnbound(null);
+
+        assertThat(decisions.size()).isZero();
+        assertThat(streams).allMatch(Stream::cancelled);
+    }
+
+    private Flux<IdentifiableAuthorizationDecision> decide(MultiAuthorizationSubscription multiSubscription) {
+        var stream = new Stream(multiSubscription, Sinks.many().replay().all(), new boolean[1]);
+        streams.add(stream);
+        return stream.sink().asFlux().doOnCancel(() -> stream.cancellation()[0] = true);
+    }
+
+    private record Stream(MultiAuthorizationSubscription multiSubscription,
+            Sinks.Many<IdentifiableAuthorizationDecision> sink, boolean[] cancellation) {
+
+        void decide(AuthorizationSubscription subscription, AuthorizationDecision decision) {
+            for (var identifiable : multiSubscription) {
+                if (identifiable.getAuthorizationSubscription().equals(subscription))
+                    sink.tryEmitNext(new IdentifiableAuthorizationDecision(
+                            identifiable.getAuthorizationSubscriptionId(), decision));
+            }
+        }
+
+        boolean cancelled() {
+            return cancellation[0];
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+
+class UIElementAuthorizationTests {
+
+    private final PolicyDecisionPoint pdp = mock(PolicyDecisionPoint.class);
+
+    private final UIElementAuthorization authorization = new UIElementAuthorization(pdp);
+
+    @Test
+    void when_viewHasSeveralChecks_then_oneDecideAllForTheView() {
+        var decision = new MultiAuthorizationDecision();
+        decision.setAuthorizationDecisionForSubscriptionWithId("updateButton", AuthorizationDecision.PERMIT);
+        decision.setAuthorizationDecisionForSubscriptionWithId("deleteButton", AuthorizationDecision.DENY);
+        when(pdp.decideAll(any())).thenReturn(Flux.just(decision));
+
+        var results = authorization.forSubject("Julia").check("updateButton", "use", "ui:updateButton")
+                .check("deleteButton", "use", "ui:deleteButton").decide();
+
+        var multiSubscription = ArgumentCaptor.forClass(MultiAuthorizationSubscription.class);
+        verify(pdp, times(1)).decideAll(multiSubscription.capture());
+        assertThat(multiSubscription.getValue().getAuthorizationSubscriptionWithId("updateButton"))
+                .isEqualTo(AuthorizationSubscription.of("Julia", "use", "ui:updateButton"));
+        assertThat(multiSubscription.getValue().getAuthorizationSubscriptionWithId("deleteButton"))
+                .isEqualTo(AuthorizationSubscription.of("Julia", "use", "ui:deleteButton"));
+        assertThat(results).containsExactly(entry("updateButton", true), entry("deleteButton", false));
+        assertThat(authorization.pdpRequests()).isEqualTo(1L);
+        assertThat(authorization.checks()).isEqualTo(2L);
+    }
+
+    @Test
+    void when_decisionIsIndeterminateOrMissing_then_notPermitted() {
+        var decision = new MultiAuthorizationDecision();
+        decision.setAuthorizationDecisionForSubscriptionWithId("indeterminate", AuthorizationDecision.INDETERMINATE);
+        decision.setAuthorizationDecisionForSubscriptionWithId("permitted", AuthorizationDecision.PERMIT);
+        when(pdp.decideAll(any())).thenReturn(Flux.just(decision));
+
+        var results = authorization.forSubject("Julia").check("indeterminate", "use", "ui:a")
+                .check("permitted", "use", "ui:b").check("missing", "use", "ui:c").decide();
+
+        assertThat(results).containsExactly(entry("indeterminate", false), entry("permitted", true),
+                entry("missing", false));
+    }
+
+    @Test
+    void when_pdpEmitsNoDecision_then_nothingPermitted() {
+        when(pdp.decideAll(any())).thenReturn(Flux.empty());
+
+        var results = authorization.forSubject("Julia").check("updateButton", "use", "ui:updateButton")
+                .check("deleteButton", "use", "ui:deleteButton").decide();
+
+        assertThat(results).containsExactly(entry("updateButton", false), entry("deleteButton", false));
+    }
+
+    @Test
+    void when_noChecks_then_noRequestToThePdp() {
+        assertThat(authorization.forSubject("Julia").decide()).isEmpty();
+        verify(pdp, never()).decideAll(any());
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.sapl.mvc.demo.MvcDemoApplication;
+import io.sapl.mvc.demo.constraints.EmailOutbox;
+
+/**
+ * Tests of the policies for updating several fields of a patient in one
+ * request, i.e., PatientRepository.updateFieldsById. The fields are set to
+ * their current values, so that the patients remain unchanged.
+ */
+@DirtiesContext
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PatientFieldsUpdateTests {
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @Autowired
+    EmailOutbox outbox;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_nurseSubmitsDiagnosisText_then_accessDenied() {
+        var patient = currentPatient(1L);
+        authenticate("Thomas");
+
+        var changes = Map.of("diagnosisText", patient.getDiagnosisText());
+        assertThatThrownBy(() -> patientRepository.updateFieldsById(1L, changes))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void when_nurseSubmitsOtherFields_then_updated() {
+        var patient = currentPatient(1L);
+        authenticate("Thomas");
+
+        patientRepository.updateFieldsById(1L,
+                Map.of("phoneNumber", patient.getPhoneNumber(), "roomNumber", patient.getRoomNumber()));
+        assertThat(currentPatient(1L)).isEqualTo(patient);
+    }
+
+    @Test
+    void when_nonAttendingDoctorSubmitsDiagnosisText_then_attendingDoctorIsEmailed() {
+        var patient  = currentPatient(1L);
+        var enqueued = outbox.statistics().enqueued();
+        authenticate("Peter");
+
+        patientRepository.updateFieldsById(1L, Map.of("diagnosisText", patient.getDiagnosisText()));
+        assertThat(outbox.statistics().enqueued()).isEqualTo(enqueued + 1);
+    }
+
+    @Test
+    void when_attendingDoctorSubmitsDiagnosisText_then_noEmail() {
+        var patient  = currentPatient(1L);
+        var enqueued = outbox.statistics().enqueued();
+        authenticate("Julia");
+
+        patientRepository.updateFieldsById(1L, Map.of("diagnosisText", patient.getDiagnosisText()));
+        assertThat(outbox.statistics().enqueued()).isEqualTo(enqueued);
+    }
+
+    @Test
+    void when_unknownFieldSubmitted_then_rejected() {
+        authenticate("Julia");
+
+        var changes = Map.of("medicalRecordNumber", "000000");
+        assertThatThrownBy(() -> patientRepository.updateFieldsById(1L, changes))
+                .isInstanceOfAny(IllegalArgumentException.class, InvalidDataAccessApiUsageException.class)
+                .hasMessageContaining("'medicalRecordNumber'");
+    }
+
+    private Patient currentPatient(Long id) {
+        authenticate("Julia");
+        var patient = patientRepository.findById(id).orElseThrow();
+        SecurityContextHolder.clearContext();
+        return patient;
+    }
+
+    private void authenticate(String username) {
+        var user = userDetailsService.loadUserByUsername(username);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities()));
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.sapl.mvc.demo.MvcDemoApplication;
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import io.sapl.mvc.demo.domain.Relation;
+import io.sapl.mvc.demo.domain.RelationRepository;
+
+/**
+ * The repositories of the PatientPIP read from the second-level cache of
+ * Hibernate. These tests load a patient or its relations into the cache,
+ * change them through the PatientRepository or RelationRepository, and expect
+ * the next read of the PIP repositories to show the change, i.e., Hibernate
+ * invalidates the cache without further eviction.
+ */
+@DirtiesContext
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PIPRepositoriesTests {
+
+    private static final String VISITOR = "Visitor";
+
+    @Autowired
+    PIPPatientRepository pipPatientRepository;
+
+    @Autowired
+    PIPRelationRepository pipRelationRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    RelationRepository relationRepository;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_patientUpdatedInBulk_then_nextFindByIdShowsNewValue() {
+        authenticate("Julia");
+        var originalPhoneNumber = pipPatientRepository.findById(1L).orElseThrow().getPhoneNumber();
+        try {
+            patientRepository.updatePhoneNumberById("+78(0)456-111", 1L);
+            assertThat(pipPatientRepository.findById(1L).orElseThrow().getPhoneNumber()).isEqualTo("+78(0)456-111");
+        } finally {
+            patientRepository.updatePhoneNumberById(originalPhoneNumber, 1L);
+        }
+        assertThat(pipPatientRepository.findById(1L).orElseThrow().getPhoneNumber()).isEqualTo(originalPhoneNumber);
+    }
+
+    @Test
+    void when_patientSaved_then_nextFindByIdShowsNewValue() {
+        authenticate("Julia");
+        var patient      = pipPatientRepository.findById(1L).orElseThrow();
+        var originalRoom = patient.getRoomNumber();
+        try {
+            patient.setRoomNumber("R.999");
+            patientRepository.save(patient);
+            assertThat(pipPatientRepository.findById(1L).orElseThrow().getRoomNumber()).isEqualTo("R.999");
+        } finally {
+            patient.setRoomNumber(originalRoom);
+            patientRepository.save(patient);
+        }
+        assertThat(pipPatientRepository.findById(1L).orElseThrow().getRoomNumber()).isEqualTo(originalRoom);
+    }
+
+    @Test
+    void when_relationsSavedAndDeleted_then_nextFindByPatientIdShowsChange() {
+        assertThat(usernames(pipRelationRepository.findByPatientId(2L))).doesNotContain(VISITOR);
+        assertThat(pipRelationRepository.existsByPatientIdAndUsername(2L, VISITOR)).isFalse();
+
+        var saved = relationRepository.save(new Relation(VISITOR, 2L));
+        assertThat(usernames(pipRelationRepository.findByPatientId(2L))).contains(VISITOR);
+        assertThat(pipRelationRepository.existsByPatientIdAndUsername(2L, VISITOR)).isTrue();
+
+        relationRepository.delete(saved);
+        assertThat(usernames(pipRelationRepository.findByPatientId(2L))).doesNotContain(VISITOR);
+        assertThat(pipRelationRepository.existsByPatientIdAndUsername(2L, VISITOR)).isFalse();
+    }
+
+    private static List<String> usernames(List<Relation> relations) {
+        return relations.stream().map(Relation::getUsername).toList();
+    }
+
+    private void authenticate(String username) {
+        var user = userDetailsService.loadUserByUsername(username);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities()));
+    }
+
+}
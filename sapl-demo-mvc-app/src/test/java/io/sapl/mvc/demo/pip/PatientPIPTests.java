@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.pip;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.sapl.api.interpreter.Val;
+import io.sapl.mvc.demo.MvcDemoApplication;
+import io.sapl.mvc.demo.domain.DemoData;
+import io.sapl.mvc.demo.domain.PatientRepository;
+import io.sapl.mvc.demo.domain.Relation;
+import io.sapl.mvc.demo.domain.RelationRepository;
+import lombok.SneakyThrows;
+
+/**
+ * The attributes of the PatientPIP are cached and streamed. These tests change
+ * patients and relations through the repositories and expect the attributes to
+ * show the new values, i.e., the RepositoryChangePublisher invalidates the
+ * caches and notifies the streams.
+ */
+@DirtiesContext
+@SpringBootTest(classes = MvcDemoApplication.class)
+class PatientPIPTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String VISITOR = "Visitor";
+
+    @Autowired
+    PatientPIP patientPIP;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    RelationRepository relationRepository;
+
+    @Autowired
+    UserDetailsService userDetailsService;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void when_patientUpdated_then_patientRecordShowsNewValue() {
+        authenticate("Julia");
+        var originalPhoneNumber = patientRepository.findById(1L).orElseThrow().getPhoneNumber();
+        try {
+            assertThat(phoneNumber(1L)).isEqualTo(originalPhoneNumber);
+            patientRepository.updatePhoneNumberById("+78(0)456-000", 1L);
+            assertThat(phoneNumber(1L)).isEqualTo("+78(0)456-000");
+        } finally {
+            patientRepository.updatePhoneNumberById(originalPhoneNumber, 1L);
+        }
+        assertThat(phoneNumber(1L)).isEqualTo(originalPhoneNumber);
+    }
+
+    @Test
+    void when_relationsSavedAndDeleted_then_relativesShowChange() {
+        assertThat(relatives(2L)).doesNotContain(VISITOR);
+
+        var saved = relationRepository.saveAll(List.of(new Relation(VISITOR, 2L)));
+        assertThat(relatives(2L)).contains(VISITOR);
+
+        relationRepository.deleteAll(saved);
+        assertThat(relatives(2L)).doesNotContain(VISITOR);
+    }
+
+    @Test
+    void when_relationAddedAndRemoved_then_isRelativeFlips() {
+        var values       = new CopyOnWriteArrayList<Boolean>();
+        var subscription = patientPIP.isRelative(Val.of(2L), Map.of(), Val.of(VISITOR))
+                .subscribe(value -> values.add(value.getBoolean()));
+        try {
+            await(() -> values.size() == 1);
+            var saved = relationRepository.save(new Relation(VISITOR, 2L));
+            await(() -> values.size() == 2);
+            relationRepository.delete(saved);
+            await(() -> values.size() == 3);
+        } finally {
+            subscription.dispose();
+        }
+        assertThat(values).containsExactly(false, true, false);
+    }
+
+    private String phoneNumber(long patientId) {
+        return patientPIP.getPatientRecord(Val.of(patientId), Map.of()).blockFirst(TIMEOUT).get().get("phoneNumber")
+                .asText();
+    }
+
+    private List<String> relatives(long patientId) {
+        var relatives = new ArrayList<String>();
+        patientPIP.getRelations(Val.of(patientId), Map.of()).blockFirst(TIMEOUT).get()
+                .forEach(relative -> relatives.add(relative.asText()));
+        return relatives;
+    }
+
+    @SneakyThrows
+    private static void await(BooleanSupplier condition) {
+        var deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+    private void authenticate(String username) {
+        var user = userDetailsService.loadUserByUsername(username);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, DemoData.DEFAULT_RAW_PASSWORD, user.getAuthorities()));
+    }
+
+}
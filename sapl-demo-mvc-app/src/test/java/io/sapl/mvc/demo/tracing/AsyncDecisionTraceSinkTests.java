@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.mvc.demo.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.Decision;
+import io.sapl.api.pdp.TracedDecision;
+
+class AsyncDecisionTraceSinkTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void when_sampleRateIsZero_then_noDecisionSampled() {
+        var sink = sink(8, 0.0D, Set.of());
+
+        for (var i = 0; i < 100; i++)
+            sink.apply(traced(AuthorizationDecision.PERMIT));
+
+        assertThat(sink.statistics().decisions()).isEqualTo(100L);
+        assertThat(sink.statistics().sampled()).isZero();
+        assertThat(sink.statistics().queued()).isZero();
+    }
+
+    @Test
+    void when_sampleRateIsOne_then_allDecisionsSampled() {
+        var sink = sink(128, 1.0D, Set.of());
+
+        for (var i = 0; i < 100; i++)
+            sink.apply(traced(AuthorizationDecision.PERMIT));
+
+        assertThat(sink.statistics().sampled()).isEqualTo(100L);
+        assertThat(sink.statistics().queued()).isEqualTo(100);
+    }
+
+    @Test
+    void when_decisionAlwaysTraced_then_sampledRegardlessOfSampleRate() {
+        var sink = sink(8, 0.0D, Set.of(Decision.DENY));
+
+        sink.apply(traced(AuthorizationDecision.PERMIT));
+        sink.apply(traced(AuthorizationDecision.DENY));
+        sink.apply(traced(AuthorizationDecision.INDETERMINATE));
+
+        assertThat(sink.statistics().decisions()).isEqualTo(3L);
+        assertThat(sink.statistics().sampled()).isEqualTo(1L);
+        assertThat(sink.statistics().queued()).isEqualTo(1);
+    }
+
+    @Test
+    void when_queueFull_then_tracesDroppedAndCounted() {
+        var sink     = sink(2, 1.0D, Set.of());
+        var decision = traced(AuthorizationDecision.DENY);
+
+        for (var i = 0; i < 5; i++)
+            assertThat(sink.apply(decision)).isSameAs(decision);
+
+        assertThat(sink.statistics().sampled()).isEqualTo(5L);
+        assertThat(sink.statistics().dropped()).isEqualTo(3L);
+        assertThat(sink.statistics().queued()).isEqualTo(2);
+    }
+
+    @Test
+    void when_stopped_then_queuedTracesWrittenAsNdjson() throws Exception {
+        var sink = sink(8, 0.0D, Set.of(Decision.DENY, Decision.INDETERMINATE));
+        sink.apply(traced(AuthorizationDecision.DENY));
+        sink.apply(traced(AuthorizationDecision.INDETERMINATE));
+
+        sink.start();
+        sink.stop();
+
+        var lines = Files.readAllLines(directory.resolve("traces.ndjson"));
+        assertThat(lines).hasSize(2);
+        assertThat(mapper.readTree(lines.get(0)).get("decision").asText()).isEqualTo("DENY");
+        assertThat(mapper.readTree(lines.get(1)).get("decision").asText()).isEqualTo("INDETERMINATE");
+        assertThat(mapper.readTree(lines.get(0)).get("trace").get("policy").asText()).isEqualTo("test");
+        assertThat(mapper.readTree(lines.get(0)).has("timestamp")).isTrue();
+        assertThat(sink.statistics().written()).isEqualTo(2L);
+        assertThat(sink.statistics().queued()).isZero();
+    }
+
+    private AsyncDecisionTraceSink sink(int capacity, double sampleRate, Set<Decision> alwaysTraced) {
+        return new AsyncDecisionTraceSink(mapper, new DecisionTracingProperties(true,
+                directory.resolve("traces.ndjson"), capacity, sampleRate, alwaysTraced));
+    }
+
+    private TracedDecision traced(AuthorizationDecision decision) {
+        var tracedDecision = mock(TracedDecision.class);
+        when(tracedDecision.getAuthorizationDecision()).thenReturn(decision);
+        when(tracedDecision.getTrace()).thenReturn(mapper.createObjectNode().put("policy", "test"));
+        return tracedDecision;
+    }
+
+}
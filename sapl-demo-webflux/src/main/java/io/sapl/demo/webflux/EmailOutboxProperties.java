@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration of the email outbox.
+ *
+ * @param file              the file persisting the emails until they are
+ *                          delivered
+ * @param deadLetterFile    the file collecting the emails which cannot be
+ *                          delivered
+ * @param capacity          the maximal number of emails waiting for delivery.
+ *                          Further emails are rejected.
+ * @param batchSize         the maximal number of emails delivered at once
+ * @param retryDelay        the delay before the first retry of a failed
+ *                          delivery, doubled with each further retry
+ * @param maximumRetryDelay the maximal delay between retries
+ * @param maxAttempts       the maximal attempts to deliver an email, before it
+ *                          is moved to the dead-letter file
+ * @param sender            the sender of the emails
+ */
+@ConfigurationProperties(prefix = "demo.email-outbox")
+public record EmailOutboxProperties(@DefaultValue("email-outbox.ndjson") Path file,
+        @DefaultValue("email-outbox-dead-letters.ndjson") Path deadLetterFile, @DefaultValue("1000") int capacity,
+        @DefaultValue("50") int batchSize, @DefaultValue("1s") Duration retryDelay,
+        @DefaultValue("1m") Duration maximumRetryDelay, @DefaultValue("10") int maxAttempts,
+        @DefaultValue("sapl-demo@localhost") String sender) {
+}
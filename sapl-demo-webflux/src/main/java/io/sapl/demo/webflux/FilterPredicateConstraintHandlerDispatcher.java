@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.springframework.stereotype.Component;
+
+import io.sapl.spring.constraints.api.FilterPredicateConstraintHandlerProvider;
+
+/**
+ * Registers all TypedConstraintHandlerProvider beans for filter predicates with
+ * the PEP as a single constraint handler provider.
+ */
+@Component
+public class FilterPredicateConstraintHandlerDispatcher extends ConstraintHandlerRegistry<Predicate<Object>>
+        implements FilterPredicateConstraintHandlerProvider {
+
+    public FilterPredicateConstraintHandlerDispatcher(
+            List<TypedConstraintHandlerProvider<Predicate<Object>>> providers) {
+        super(providers);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A provider of handlers for constraints of a single type, i.e., constraints
+ * with a matching 'type' field.
+ *
+ * In contrast to the constraint handler providers of the SAPL Spring
+ * integration, these providers are not asked by the PEP one after the other.
+ * They are indexed by their type by a ConstraintHandlerRegistry, which
+ * dispatches each constraint to the provider of its type.
+ *
+ * @param <H> the type of the handlers, e.g., Consumer&lt;Object&gt;
+ */
+public interface TypedConstraintHandlerProvider<H> {
+
+    /**
+     * @return the value of the 'type' field of the constraints handled
+     */
+    String getType();
+
+    /**
+     * Validates a constraint of the handled type. Declining an invalid
+     * constraint leads to a clean behavior in case of obligations.
+     *
+     * @param constraint a constraint of the handled type
+     * @return true, if a handler for the constraint can be built
+     */
+    default boolean isValid(JsonNode constraint) {
+        return true;
+    }
+
+    /**
+     * @param constraint a valid constraint of the handled type
+     * @return the handler implementing the constraint
+     */
+    H getHandler(JsonNode constraint);
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux.classified;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.springframework.aop.framework.ReflectiveMethodInvocation;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.sapl.demo.webflux.TypedConstraintHandlerProvider;
+
+/**
+ * Pushes the clearance of a filterClassifiedDocuments constraint into the
+ * query of the DocumentsService, similar to a method argument modification.
+ * Thus, the DocumentRepository only reads the documents the user may see,
+ * instead of reading all documents and dropping most of them afterwards.
+ *
+ * The handler only replaces arguments of the dedicated type ClearanceFilter,
+ * so that no other argument of an enforced method is overwritten. The
+ * FilterClassifiedDocumentsContraintHandlerProvider handles the same
+ * constraint and still filters the returned documents.
+ */
+@Service
+public class ClearanceArgumentConstraintHandlerProvider
+        implements TypedConstraintHandlerProvider<Consumer<ReflectiveMethodInvocation>> {
+
+    @Override
+    public String getType() {
+        return "filterClassifiedDocuments";
+    }
+
+    @Override
+    public Consumer<ReflectiveMethodInvocation> getHandler(JsonNode constraint) {
+        var filter = ClearanceFilter.upTo(FilterClassifiedDocumentsContraintHandlerProvider.clearance(constraint));
+
+        return methodInvocation -> {
+            var arguments = Arrays.copyOf(methodInvocation.getArguments(), methodInvocation.getArguments().length);
+            for (var i = 0; i < arguments.length; i++) {
+                if (arguments[i] instanceof ClearanceFilter)
+                    arguments[i] = filter;
+            }
+            methodInvocation.setArguments(arguments);
+        };
+    }
+
+}
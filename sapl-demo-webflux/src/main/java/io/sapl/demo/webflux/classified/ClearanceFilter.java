@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux.classified;
+
+/**
+ * The argument of DocumentsService.getDocuments which restricts the documents
+ * to a clearance. Callers pass {@link #unrestricted()}. The
+ * ClearanceArgumentConstraintHandlerProvider replaces it with the clearance
+ * of the filterClassifiedDocuments obligation of the decision.
+ *
+ * @param clearance the highest classification to read, or null to read all
+ *                  documents
+ */
+public record ClearanceFilter(NatoSecurityClassification clearance) {
+
+    private static final ClearanceFilter UNRESTRICTED = new ClearanceFilter(null);
+
+    /**
+     * @return a filter reading all documents
+     */
+    public static ClearanceFilter unrestricted() {
+        return UNRESTRICTED;
+    }
+
+    /**
+     * @param clearance the highest classification to read
+     * @return a filter reading the documents up to the clearance
+     */
+    public static ClearanceFilter upTo(NatoSecurityClassification clearance) {
+        return new ClearanceFilter(clearance);
+    }
+
+    /**
+     * @return true, if the documents are restricted to a clearance
+     */
+    public boolean isRestricted() {
+        return clearance != null;
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux.classified;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * An in-memory store of classified documents, standing in for a document
+ * database.
+ *
+ * The documents are partitioned by their classification into one segment per
+ * level. As the classifications are ordered, the documents up to a clearance
+ * are the segments up to the clearance. They are streamed without checking
+ * the classification of each document.
+ *
+ * The segments are immutable. Each change replaces the changed segments and
+ * publishes a new set of segments at once. Readers stream the segments
+ * published when they subscribed. Thus, a document moved between segments
+ * while streaming is neither missed nor read twice. Changes copy the changed
+ * segments and are meant to be rare compared to reads. Changes of many
+ * documents should be applied with one call.
+ *
+ * The documents are streamed on demand of the subscriber. Thus, a slow
+ * subscriber does not cause all documents to be read at once.
+ */
+@Repository
+public class DocumentRepository {
+
+    private static final List<Document> DEMO_DOCUMENTS = List.of(
+            new Document(NatoSecurityClassification.NATO_UNCLASSIFIED, "Introduction", """
+                    This demo collection of documents is filtered based on the document's \
+                    classification and the users clearance level. \
+                    As this is an unauthenticated service, the demo assumes a \
+                    different clearance level for the user based on time (changes every few seconds). \
+                    In particular the purpose of this demo endpoint is to \
+                    demonstrate the filtering of Flux elements based on a constraint \
+                    in the authorization decision.\
+                    """),
+            new Document(NatoSecurityClassification.NATO_RESTRICTED, "Door Operator Manual",
+                    "Doors are operated using doorhandles and locks."),
+            new Document(NatoSecurityClassification.NATO_CONFIDENTIAL, "Sum of 2 and 2",
+                    "Contrary to common belief, 2+2 is not 5. In fact it is 4."),
+            new Document(NatoSecurityClassification.NATO_SECRET, "Tea Preparation Secrets",
+                    "When brewing green tea for board members, remember to cool the water down to 80°C before "
+                            + "adding the tea leafes."),
+            new Document(NatoSecurityClassification.COSMIC_TOP_SECRET, "Alien Visitor Factsheet", """
+                    The only extraterrestrial alien to ever have visited Earth appeared in 2018. \
+                    His name was Bob and he really enjoyed Taylor Swift, cow-tipping, and long \
+                    walks on the beach. \
+                    He finally left Earth early 2019, because he thought breathing through \
+                    a nose was disgusting.\
+                    """));
+
+    private static final NatoSecurityClassification[] CLASSIFICATIONS = NatoSecurityClassification.values();
+
+    private volatile Map<NatoSecurityClassification, List<Document>> segments;
+
+    public DocumentRepository() {
+        this(DEMO_DOCUMENTS);
+    }
+
+    /**
+     * @param documents the stored documents
+     */
+    public DocumentRepository(Collection<Document> documents) {
+        this.segments = changeSegments(emptySegments(), List.of(), documents);
+    }
+
+    /**
+     * @return all documents, ordered by classification
+     */
+    public Flux<Document> findAll() {
+        return findByClassificationUpTo(CLASSIFICATIONS[CLASSIFICATIONS.length - 1]);
+    }
+
+    /**
+     * Like a query with a condition on the classification, only the documents
+     * up to the clearance leave the repository.
+     *
+     * @param clearance the clearance of the user
+     * @return the documents classified at most as the clearance, ordered by
+     *         classification
+     */
+    public Flux<Document> findByClassificationUpTo(NatoSecurityClassification clearance) {
+        return Flux.defer(() -> {
+            var snapshot = segments;
+            return Flux.fromArray(CLASSIFICATIONS).take(clearance.ordinal() + 1L).concatMapIterable(snapshot::get);
+        });
+    }
+
+    /**
+     * @param documents the documents to add
+     */
+    public void saveAll(Collection<Document> documents) {
+        change(List.of(), documents);
+    }
+
+    /**
+     * @param documents the documents to remove
+     */
+    public void deleteAll(Collection<Document> documents) {
+        change(documents, List.of());
+    }
+
+    /**
+     * Replaces a document, e.g., after changing its classification. Readers see
+     * either the original or the replacement.
+     *
+     * @param original    the stored document
+     * @param replacement the new version of the document
+     */
+    public void replace(Document original, Document replacement) {
+        change(List.of(original), List.of(replacement));
+    }
+
+    /**
+     * @return the number of stored documents per classification
+     */
+    public Map<NatoSecurityClassification, Integer> countByClassification() {
+        var snapshot = segments;
+        var counts   = new EnumMap<NatoSecurityClassification, Integer>(NatoSecurityClassification.class);
+        snapshot.forEach((classification, segment) -> counts.put(classification, segment.size()));
+        return counts;
+    }
+
+    private synchronized void change(Collection<Document> removed, Collection<Document> added) {
+        segments = changeSegments(segments, removed, added);
+    }
+
+    private static Map<NatoSecurityClassification, List<Document>> emptySegments() {
+        var empty = new EnumMap<NatoSecurityClassification, List<Document>>(NatoSecurityClassification.class);
+        for (var classification : CLASSIFICATIONS) {
+            empty.put(classification, List.of());
+        }
+        return empty;
+    }
+
+    /**
+     * Copies only the segments affected by the change. The removed documents are
+     * counted by document, and each affected segment is filtered in a single
+     * pass. Like List.remove, each removal removes one occurrence of an equal
+     * document. The returned segments are not modified afterwards.
+     */
+    private static Map<NatoSecurityClassification, List<Document>> changeSegments(
+            Map<NatoSecurityClassification, List<Document>> current, Collection<Document> removed,
+            Collection<Document> added) {
+        var changed = new EnumMap<NatoSecurityClassification, List<Document>>(NatoSecurityClassification.class);
+        Function<NatoSecurityClassification, List<Document>> copy = classification -> new ArrayList<>(
+                current.get(classification));
+        var removals = new HashMap<Document, Integer>();
+        for (var document : removed) {
+            removals.merge(document, 1, Integer::sum);
+        }
+        var affected = EnumSet.noneOf(NatoSecurityClassification.class);
+        removals.keySet().forEach(document -> affected.add(document.classification()));
+        for (var classification : affected) {
+            changed.computeIfAbsent(classification, copy).removeIf(document -> takeOne(removals, document));
+        }
+        for (var document : added) {
+            changed.computeIfAbsent(document.classification(), copy).add(document);
+        }
+        var result = new EnumMap<>(current);
+        changed.forEach((classification, segment) -> result.put(classification, List.copyOf(segment)));
+        return result;
+    }
+
+    private static boolean takeOne(Map<Document, Integer> removals, Document document) {
+        var count = removals.get(document);
+        if (count == null)
+            return false;
+
+        if (count == 1)
+            removals.remove(document);
+        else
+            removals.put(document, count - 1);
+        return true;
+    }
+
+}
@@ -32,6 +32,6 @@ public class DocumentsController {
 
     @GetMapping(value = "/documents", produces = MediaType.APPLICATION_JSON_VALUE)
     public Flux<Document> documents() {
-        return service.getDocuments();
+        return service.getDocuments(ClearanceFilter.unrestricted());
     }
 }
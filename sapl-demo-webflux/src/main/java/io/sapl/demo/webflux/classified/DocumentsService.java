@@ -3,38 +3,27 @@
 import org.springframework.stereotype.Service;
 
 import io.sapl.spring.method.metadata.PreEnforce;
+import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 
 @Service
+@RequiredArgsConstructor
 public class DocumentsService {
 
-    private static final Document[] documents = {
-            new Document(NatoSecurityClassification.NATO_UNCLASSIFIED, "Introduction", """
-                    This demo collection of documents is filtered based on the document's \
-                    classification and the users clearance level. \
-                    As this is an unauthenticated service, the demo assumes a \
-                    different clearance level for the user based on time (changes every few seconds). \
-                    In particular the purpose of this demo endpoint is to \
-                    demonstrate the filtering of Flux elements based on a constraint \
-                    in the authorization decision.\
-                    """),
-            new Document(NatoSecurityClassification.NATO_RESTRICTED, "Door Operator Manual",
-                    "Doors are operated using doorhandles and locks."),
-            new Document(NatoSecurityClassification.NATO_CONFIDENTIAL, "Sum of 2 and 2",
-                    "Contrary to common belief, 2+2 is not 5. In fact it is 4."),
-            new Document(NatoSecurityClassification.NATO_SECRET, "Tea Preparation Secrets",
-                    "When brewing green tea for board members, remember to cool the water down to 80°C before adding the tea leafes."),
-            new Document(NatoSecurityClassification.COSMIC_TOP_SECRET, "Alien Visitor Factsheet", """
-                    The only extraterrestrial alien to ever have visited Earth appeared in 2018. \
-                    His name was Bob and he really enjoyed Taylor Swift, cow-tipping, and long \
-                    walks on the beach. \
-                    He finally left Earth early 2019, because he thought breathing through \
-                    a nose was disgusting.\
-                    """), };
+    private final DocumentRepository repository;
 
+    /**
+     * The clearance is set by the ClearanceArgumentConstraintHandlerProvider from
+     * the filterClassifiedDocuments obligation of the decision. Thus, callers
+     * pass ClearanceFilter.unrestricted().
+     *
+     * @param filter the clearance of the user, if unrestricted, all documents are
+     *               read
+     * @return the documents
+     */
     @PreEnforce(genericsType = Document.class)
-    public Flux<Document> getDocuments() {
-        return Flux.fromArray(documents);
+    public Flux<Document> getDocuments(ClearanceFilter filter) {
+        return filter.isRestricted() ? repository.findByClassificationUpTo(filter.clearance()) : repository.findAll();
     }
 
 }
@@ -6,34 +6,49 @@
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-import io.sapl.spring.constraints.api.FilterPredicateConstraintHandlerProvider;
-
+import io.sapl.demo.webflux.TypedConstraintHandlerProvider;
+
+/**
+ * Filters the documents returned by the DocumentsService by the clearance of
+ * the user. The ClearanceArgumentConstraintHandlerProvider already pushes the
+ * clearance into the query of the DocumentsService. This filter remains as a
+ * safety net, e.g., for documents which were reclassified while streaming.
+ *
+ * Registered with the spring policy enforcement points by the
+ * FilterPredicateConstraintHandlerDispatcher.
+ */
 @Service
-public class FilterClassifiedDocumentsContraintHandlerProvider implements FilterPredicateConstraintHandlerProvider {
+public class FilterClassifiedDocumentsContraintHandlerProvider
+        implements TypedConstraintHandlerProvider<Predicate<Object>> {
 
     @Override
-    public boolean isResponsible(JsonNode constraint) {
-        return constraint != null && constraint.has("type")
-                && "filterClassifiedDocuments".equals(constraint.findValue("type").asText());
+    public String getType() {
+        return "filterClassifiedDocuments";
     }
 
     @Override
     public Predicate<Object> getHandler(JsonNode constraint) {
-        var clearanceAux = NatoSecurityClassification.NATO_UNCLASSIFIED;
+        var clearance = clearance(constraint);
+
+        return document -> clearanceMatchesOrIsHigherThanClassification(clearance,
+                ((Document) document).classification());
+
+    }
 
+    /**
+     * @param constraint a filterClassifiedDocuments constraint
+     * @return the clearance of the constraint, or NATO_UNCLASSIFIED, if the
+     *         constraint has no valid clearance
+     */
+    static NatoSecurityClassification clearance(JsonNode constraint) {
         if (constraint.has("clearance")) {
             try {
-                clearanceAux = NatoSecurityClassification.valueOf(constraint.findValue("clearance").asText());
+                return NatoSecurityClassification.valueOf(constraint.findValue("clearance").asText());
             } catch (IllegalArgumentException e) {
                 // NOOP
             }
         }
-
-        var clearance = clearanceAux;
-
-        return document -> clearanceMatchesOrIsHigherThanClassification(clearance,
-                ((Document) document).classification());
-
+        return NatoSecurityClassification.NATO_UNCLASSIFIED;
     }
 
     private boolean clearanceMatchesOrIsHigherThanClassification(NatoSecurityClassification clearance,
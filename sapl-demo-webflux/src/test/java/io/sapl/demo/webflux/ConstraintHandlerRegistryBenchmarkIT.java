@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reports the latency of dispatching constraints over many providers, asking
+ * every provider one after another as the PEP does, compared to the
+ * ConstraintHandlerRegistry. The benchmarks are not executed by the regular
+ * build. Run them with: mvn test -Dtest=ConstraintHandlerRegistryBenchmarkIT
+ */
+@Slf4j
+class ConstraintHandlerRegistryBenchmarkIT {
+
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+
+    private static final int PROVIDERS = 24;
+
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    void whenDispatchingConstraints_thenReportLatencyOfLinearScanAndRegistry() {
+        var providers   = providers(PROVIDERS);
+        var registry    = new ConstraintHandlerRegistry<>(providers);
+        var constraints = new ArrayList<JsonNode>();
+        for (int i = 0; i < PROVIDERS; i++) {
+            constraints.add(constraint(i));
+        }
+
+        // warm up both variants before measuring
+        var linear = dispatchLinear(providers, constraints);
+        var lookup = dispatchRegistry(registry, constraints);
+        linear = dispatchLinear(providers, constraints);
+        lookup = dispatchRegistry(registry, constraints);
+
+        log.info("Dispatching {} constraints over {} providers: linear scan {} ns/constraint, registry {} ns/constraint",
+                ITERATIONS, PROVIDERS, linear / ITERATIONS, lookup / ITERATIONS);
+        assertThat(registry.isResponsible(constraints.get(PROVIDERS - 1))).isTrue();
+    }
+
+    /**
+     * Asks every provider, as the PEP does with providers implementing the SAPL
+     * interfaces directly, and builds a new handler for each constraint.
+     */
+    private static long dispatchLinear(List<Provider> providers, List<JsonNode> constraints) {
+        var start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            var constraint = constraints.get(i % constraints.size());
+            for (var provider : providers) {
+                if (provider.isResponsibleLinear(constraint))
+                    provider.getHandler(constraint).accept(constraint);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long dispatchRegistry(ConstraintHandlerRegistry<Consumer<Object>> registry,
+            List<JsonNode> constraints) {
+        var start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            var constraint = constraints.get(i % constraints.size());
+            if (registry.isResponsible(constraint))
+                registry.getHandler(constraint).accept(constraint);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<Provider> providers(int count) {
+        var providers = new ArrayList<Provider>(count);
+        for (int i = 0; i < count; i++) {
+            providers.add(new Provider("type" + i));
+        }
+        return providers;
+    }
+
+    private static JsonNode constraint(int type) {
+        return JSON.objectNode().put("type", "type" + type).put("message", "Constraint of type " + type);
+    }
+
+    @RequiredArgsConstructor
+    private static class Provider implements TypedConstraintHandlerProvider<Consumer<Object>> {
+
+        private final String type;
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public boolean isValid(JsonNode constraint) {
+            return constraint.has("message");
+        }
+
+        @Override
+        public Consumer<Object> getHandler(JsonNode constraint) {
+            var message = constraint.get("message").asText();
+            return value -> message.length();
+        }
+
+        boolean isResponsibleLinear(JsonNode constraint) {
+            return constraint != null && constraint.has("type")
+                    && type.equals(constraint.findValue("type").asText()) && isValid(constraint);
+        }
+
+    }
+
+}
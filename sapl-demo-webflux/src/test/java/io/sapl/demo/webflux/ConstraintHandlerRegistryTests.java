@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import lombok.RequiredArgsConstructor;
+
+class ConstraintHandlerRegistryTests {
+
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+
+    private static final int PROVIDERS = 24;
+
+    @Test
+    void when_constraintOfRegisteredType_then_responsibleAndHandlerCached() {
+        var registry   = new ConstraintHandlerRegistry<>(providers(PROVIDERS));
+        var constraint = constraint(7);
+
+        assertThat(registry.isResponsible(constraint)).isTrue();
+        assertThat(registry.getHandler(constraint)).isSameAs(registry.getHandler(constraint.deepCopy()));
+    }
+
+    @Test
+    void when_constraintOfUnknownTypeOrWithoutType_then_notResponsible() {
+        var registry = new ConstraintHandlerRegistry<>(providers(PROVIDERS));
+
+        assertThat(registry.isResponsible(constraint(PROVIDERS))).isFalse();
+        assertThat(registry.isResponsible(JSON.objectNode().put("message", "no type"))).isFalse();
+        assertThat(registry.isResponsible(JSON.textNode("type"))).isFalse();
+        assertThat(registry.isResponsible(null)).isFalse();
+    }
+
+    @Test
+    void when_invalidConstraint_then_notResponsible() {
+        var registry = new ConstraintHandlerRegistry<>(providers(PROVIDERS));
+
+        assertThat(registry.isResponsible(JSON.objectNode().put("type", "type0"))).isFalse();
+    }
+
+    @Test
+    void when_twoProvidersForSameType_then_exception() {
+        var providers = List.of(new Provider("logAccess"), new Provider("logAccess"));
+
+        assertThatThrownBy(() -> new ConstraintHandlerRegistry<>(providers))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("logAccess");
+    }
+
+    private static List<Provider> providers(int count) {
+        var providers = new ArrayList<Provider>(count);
+        for (int i = 0; i < count; i++) {
+            providers.add(new Provider("type" + i));
+        }
+        return providers;
+    }
+
+    private static JsonNode constraint(int type) {
+        return JSON.objectNode().put("type", "type" + type).put("message", "Constraint of type " + type);
+    }
+
+    @RequiredArgsConstructor
+    private static class Provider implements TypedConstraintHandlerProvider<Consumer<Object>> {
+
+        private final String type;
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public boolean isValid(JsonNode constraint) {
+            return constraint.has("message");
+        }
+
+        @Override
+        public Consumer<Object> getHandler(JsonNode constraint) {
+            var message = constraint.get("message").asText();
+            return value -> message.length();
+        }
+
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2019-2021 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.demo.webflux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import lombok.SneakyThrows;
+
+class EmailOutboxTests {
+
+    private static final long TIMEOUT_MS = 10_000L;
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    @RegisterExtension
+    static GreenMailExtension smtpServer = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @SneakyThrows
+    void when_emailsEnqueued_then_deliveredInBatchesAndFileTruncated() {
+        var outbox = new EmailOutbox(new ObjectMapper(), properties(1_000), mailSender());
+        outbox.start();
+        for (int i = 0; i < 120; i++) {
+            outbox.enqueue("doctor" + i + "@localhost", "Subject " + i, "Message " + i);
+        }
+
+        assertThat(smtpServer.waitForIncomingEmail(TIMEOUT_MS, 120)).isTrue();
+        await(() -> outbox.statistics().delivered() == 120);
+        outbox.stop();
+
+        var statistics = outbox.statistics();
+        assertThat(statistics.enqueued()).isEqualTo(120);
+        assertThat(statistics.queueDepth()).isZero();
+        assertThat(smtpServer.getReceivedMessages()[0].getSubject()).isEqualTo("Subject 0");
+        assertThat(Files.size(directory.resolve("outbox.ndjson"))).isZero();
+    }
+
+    @Test
+    @SneakyThrows
+    void when_outboxRestarted_then_undeliveredEmailsDelivered() {
+        var stopped = new EmailOutbox(new ObjectMapper(), properties(1_000), mailSender());
+        stopped.enqueue("doctor@localhost", "Subject 1", "Message 1");
+        stopped.enqueue("doctor@localhost", "Subject 2", "Message 2");
+        stopped.stop();
+
+        var restarted = new EmailOutbox(new ObjectMapper(), properties(1_000), mailSender());
+        assertThat(restarted.statistics().queueDepth()).isEqualTo(2);
+        restarted.start();
+
+        assertThat(smtpServer.waitForIncomingEmail(TIMEOUT_MS, 2)).isTrue();
+        await(() -> restarted.statistics().delivered() == 2);
+        restarted.stop();
+        assertThat(smtpServer.getReceivedMessages()[1].getSubject()).isEqualTo("Subject 2");
+    }
+
+    @Test
+    @SneakyThrows
+    void when_enqueued_then_persistedByWriterNotByCaller() {
+        var outbox = new EmailOutbox(new ObjectMapper(), properties(1_000), mailSender());
+        outbox.enqueue("doctor@localhost", "Subject", "Message");
+        assertThat(Files.size(directory.resolve("outbox.ndjson"))).isZero();
+        assertThat(outbox.statistics().queueDepth()).isEqualTo(1);
+
+        outbox.stop();
+        assertThat(Files.readString(directory.resolve("outbox.ndjson"))).contains("\"subject\":\"Subject\"");
+    }
+
+    @Test
+    @SneakyThrows
+    void when_outboxFull_then_emailRejected() {
+        var outbox = new EmailOutbox(new ObjectMapper(), properties(2), mailSender());
+        outbox.enqueue("doctor@localhost", "Subject 1", "Message 1");
+        outbox.enqueue("doctor@localhost", "Subject 2", "Message 2");
+
+        assertThatThrownBy(() -> outbox.enqueue("doctor@localhost", "Subject 3", "Message 3"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(outbox.statistics().rejected()).isEqualTo(1);
+        outbox.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void when_deliveryFails_then_retried() {
+        var attempts     = new AtomicInteger();
+        var failingTwice = new JavaMailSenderImpl() {
+                             @Override
+                             public void send(SimpleMailMessage... simpleMessages) {
+                                 if (attempts.incrementAndGet() <= 2)
+                                     throw new MailSendException("SMTP server not reachable");
+                                 super.send(simpleMessages);
+                             }
+                         };
+        failingTwice.setHost(ServerSetupTest.SMTP.getBindAddress());
+        failingTwice.setPort(ServerSetupTest.SMTP.getPort());
+        var outbox = new EmailOutbox(new ObjectMapper(), properties(1_000), failingTwice);
+        outbox.start();
+        outbox.enqueue("doctor@localhost", "Subject", "Message");
+
+        assertThat(smtpServer.waitForIncomingEmail(TIMEOUT_MS, 1)).isTrue();
+        await(() -> outbox.statistics().delivered() == 1);
+        outbox.stop();
+        assertThat(outbox.statistics().failedAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    @SneakyThrows
+    void when_recipientIsNoAddress_then_deadLetteredAndFollowingEmailsDelivered() {
+        var outbox = new EmailOutbox(new ObjectMapper(), properties(1_000), mailSender());
+        outbox.enqueue("Julia", "Subject 1", "Message 1");
+        outbox.enqueue("doctor@localhost", "Subject 2", "Message 2");
+        outbox.start();
+
+        assertThat(smtpServer.waitForIncomingEmail(TIMEOUT_MS, 1)).isTrue();
+        await(() -> outbox.statistics().delivered() == 1 && outbox.statistics().deadLettered() == 1);
+        outbox.stop();
+
+        assertThat(outbox.statistics().failedAttempts()).isZero();
+        assertThat(smtpServer.getReceivedMessages()[0].getSubject()).isEqualTo("Subject 2");
+        assertThat(Files.readString(directory.resolve("dead-letters.ndjson"))).contains("\"recipient\":\"Julia\"")
+                .contains("Subject 1");
+    }
+
+    @Test
+    @SneakyThrows
+    void when_deliveryKeepsFailing_then_deadLetteredAfterMaximalAttempts() {
+        var attempts      = new AtomicInteger();
+        var alwaysFailing = new JavaMailSenderImpl() {
+                              @Override
+                              public void send(SimpleMailMessage... simpleMessages) {
+                                  attempts.incrementAndGet();
+                                  throw new MailSendException("SMTP server not reachable");
+                              }
+                          };
+        var outbox        = new EmailOutbox(new ObjectMapper(), properties(1_000), alwaysFailing);
+        outbox.start();
+        outbox.enqueue("doctor@localhost", "Subject", "Message");
+
+        await(() -> outbox.statistics().deadLettered() == 1);
+        outbox.stop();
+        assertThat(attempts.get()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(outbox.statistics().failedAttempts()).isEqualTo(MAX_ATTEMPTS - 1);
+        assertThat(outbox.statistics().queueDepth()).isZero();
+        assertThat(Files.size(directory.resolve("outbox.ndjson"))).isZero();
+    }
+
+    private EmailOutboxProperties properties(int capacity) {
+        return new EmailOutboxProperties(directory.resolve("outbox.ndjson"), directory.resolve("dead-letters.ndjson"),
+                capacity, 50, Duration.ofMillis(10L), Duration.ofMillis(100L), MAX_ATTEMPTS, "sapl-demo@localhost");
+    }
+
+    private static JavaMailSenderImpl mailSender() {
+        var mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        mailSender.setPort(ServerSetupTest.SMTP.getPort());
+        return mailSender;
+    }
+
+    @SneakyThrows
+    private static void await(BooleanSupplier condition) {
+        var deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+}
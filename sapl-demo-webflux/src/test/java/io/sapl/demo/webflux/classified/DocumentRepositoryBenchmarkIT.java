@@ -0,0 +1,83 @@
+package io.sapl.demo.webflux.classified;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares checking the classification of each document with streaming the
+ * segments of the DocumentRepository up to the clearance, for large
+ * collections. Also reports the latency of reclassifying a single document,
+ * which copies the two affected segments. The benchmarks are not executed by
+ * the regular build. Run them with: mvn test -Dtest=DocumentRepositoryBenchmarkIT
+ */
+@Slf4j
+class DocumentRepositoryBenchmarkIT {
+
+    private static final int[] SIZES = { 1_000_000, 10_000_000 };
+
+    private static final int WARM_UP_RUNS = 3;
+
+    private static final int RUNS = 10;
+
+    private static final NatoSecurityClassification CLEARANCE = NatoSecurityClassification.NATO_RESTRICTED;
+
+    @Test
+    void whenStreamingLargeCollections_thenReportLatencyOfPredicateAndSegments() {
+        for (var size : SIZES) {
+            var documents  = documents(size);
+            var repository = new DocumentRepository(documents);
+
+            var filtered  = measure("Predicate on " + size + " documents", () -> Flux.fromIterable(documents)
+                    .filter(document -> document.classification().compareTo(CLEARANCE) <= 0));
+            var segmented = measure("Segments of " + size + " documents",
+                    () -> repository.findByClassificationUpTo(CLEARANCE));
+            assertThat(segmented).isEqualTo(filtered).isEqualTo(size * 2L / 5L);
+
+            var original     = documents.get(1);
+            var reclassified = new Document(NatoSecurityClassification.NATO_SECRET, original.title(),
+                    original.contents());
+            var reclassify   = Measurement.measure(WARM_UP_RUNS, RUNS, () -> 0L, () -> {
+                                 repository.replace(original, reclassified);
+                                 repository.replace(reclassified, original);
+                                 return 0L;
+                             });
+            log.info("Reclassifying one of {} documents: mean {}ms", size, reclassify.meanMs() / 2);
+        }
+    }
+
+    /*
+     * The classifications are distributed evenly. The documents share a few
+     * instances to keep the memory footprint of large collections low.
+     */
+    private static List<Document> documents(int size) {
+        var classifications = NatoSecurityClassification.values();
+        var instances       = new Document[classifications.length];
+        for (var classification : classifications) {
+            instances[classification.ordinal()] = new Document(classification, classification.getName(),
+                    "Contents");
+        }
+        var documents = new ArrayList<Document>(size);
+        for (int i = 0; i < size; i++) {
+            documents.add(instances[i % instances.length]);
+        }
+        return documents;
+    }
+
+    /**
+     * @return the number of documents delivered by the last run
+     */
+    private static long measure(String title, Supplier<Flux<Document>> query) {
+        var measurement = Measurement.measure(WARM_UP_RUNS, RUNS, query);
+        log.info("{}: mean {}ms, delivered {}", title, measurement.meanMs(), measurement.delivered());
+        return measurement.delivered();
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.sapl.demo.webflux.classified;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.test.StepVerifier;
+
+class DocumentRepositoryTests {
+
+    @Test
+    void whenFindAll_thenAllDocuments() {
+        StepVerifier.create(new DocumentRepository().findAll()).expectNextCount(5).verifyComplete();
+    }
+
+    @Test
+    void whenSubscriberRequestsFewDocuments_thenOnlyRequestedDocumentsEmitted() {
+        var documents = new ArrayList<Document>();
+        for (int i = 0; i < 10_000; i++) {
+            documents.add(new Document(NatoSecurityClassification.NATO_UNCLASSIFIED, "Title " + i, "Contents"));
+        }
+        var repository = new DocumentRepository(documents);
+        StepVerifier.create(repository.findByClassificationUpTo(NatoSecurityClassification.NATO_UNCLASSIFIED), 2)
+                .expectNextCount(2).expectNoEvent(Duration.ofMillis(50)).thenCancel().verify();
+    }
+
+    @Test
+    void whenFindByClassificationUpTo_thenDocumentsOfSegmentsUpToClearanceInOrder() {
+        StepVerifier.create(new DocumentRepository().findByClassificationUpTo(NatoSecurityClassification.NATO_SECRET)
+                .map(Document::classification))
+                .expectNext(NatoSecurityClassification.NATO_UNCLASSIFIED, NatoSecurityClassification.NATO_RESTRICTED,
+                        NatoSecurityClassification.NATO_CONFIDENTIAL, NatoSecurityClassification.NATO_SECRET)
+                .verifyComplete();
+    }
+
+    @Test
+    void whenDocumentsSavedReplacedAndDeleted_thenSegmentsUpdated() {
+        var repository   = new DocumentRepository(List.of());
+        var restricted   = new Document(NatoSecurityClassification.NATO_RESTRICTED, "Title", "Contents");
+        var reclassified = new Document(NatoSecurityClassification.NATO_SECRET, "Title", "Contents");
+
+        repository.saveAll(List.of(restricted));
+        assertThat(repository.countByClassification()).containsEntry(NatoSecurityClassification.NATO_RESTRICTED, 1);
+
+        repository.replace(restricted, reclassified);
+        assertThat(repository.countByClassification()).containsEntry(NatoSecurityClassification.NATO_RESTRICTED, 0)
+                .containsEntry(NatoSecurityClassification.NATO_SECRET, 1);
+
+        repository.deleteAll(List.of(reclassified));
+        StepVerifier.create(repository.findAll()).verifyComplete();
+    }
+
+    @Test
+    void whenEqualDocumentsDeleted_thenOneOccurrenceRemovedPerDeletedDocument() {
+        var restricted = new Document(NatoSecurityClassification.NATO_RESTRICTED, "Title", "Contents");
+        var secret     = new Document(NatoSecurityClassification.NATO_SECRET, "Title", "Contents");
+        var repository = new DocumentRepository(List.of(restricted, restricted, restricted, secret));
+
+        repository.deleteAll(List.of(restricted, secret, restricted));
+        assertThat(repository.countByClassification()).containsEntry(NatoSecurityClassification.NATO_RESTRICTED, 1)
+                .containsEntry(NatoSecurityClassification.NATO_SECRET, 0);
+    }
+
+    @Test
+    void whenDocumentReplacedWhileStreaming_thenStreamSeesDocumentsOfItsSubscription() {
+        var documents = new ArrayList<Document>();
+        for (int i = 0; i < 3; i++) {
+            documents.add(new Document(NatoSecurityClassification.NATO_SECRET, "Title " + i, "Contents"));
+        }
+        var repository = new DocumentRepository(documents);
+        var original   = documents.get(2);
+        var restricted = new Document(NatoSecurityClassification.NATO_RESTRICTED, original.title(),
+                original.contents());
+
+        StepVerifier.create(repository.findAll().map(Document::title), 1).expectNext("Title 0")
+                .then(() -> repository.replace(original, restricted)).thenRequest(Long.MAX_VALUE)
+                .expectNext("Title 1", "Title 2").verifyComplete();
+        StepVerifier.create(repository.findAll().map(Document::title)).expectNext("Title 2", "Title 0", "Title 1")
+                .verifyComplete();
+    }
+
+    @Test
+    void whenDocumentsReclassifiedWhileReading_thenEachReadSeesEachDocumentOnce() throws Exception {
+        var documents = new ArrayList<Document>();
+        for (int i = 0; i < 1_000; i++) {
+            documents.add(new Document(NatoSecurityClassification.NATO_SECRET, "Title " + i, "Contents"));
+        }
+        var repository = new DocumentRepository(documents);
+        var running    = new AtomicBoolean(true);
+        var writer     = CompletableFuture.runAsync(() -> {
+                           while (running.get()) {
+                               for (var document : documents) {
+                                   var restricted = new Document(NatoSecurityClassification.NATO_RESTRICTED,
+                                           document.title(), document.contents());
+                                   repository.replace(document, restricted);
+                                   repository.replace(restricted, document);
+                               }
+                           }
+                       });
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                assertThat(repository.findAll().count().block()).isEqualTo(1_000L);
+            }
+        } finally {
+            running.set(false);
+            writer.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+}
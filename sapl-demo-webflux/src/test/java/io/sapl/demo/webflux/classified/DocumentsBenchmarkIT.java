@@ -0,0 +1,128 @@
+package io.sapl.demo.webflux.classified;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares reading 1M documents and filtering them afterwards with pushing the
+ * clearance into the DocumentRepository. The benchmarks are not executed by
+ * the regular build. Run them with: mvn test -Dtest=DocumentsBenchmarkIT
+ */
+@Slf4j
+@SpringBootTest
+class DocumentsBenchmarkIT {
+
+    private static final int DOCUMENTS = 1_000_000;
+
+    private static final int WARM_UP_RUNS = 3;
+
+    private static final int RUNS = 10;
+
+    private static final NatoSecurityClassification CLEARANCE = NatoSecurityClassification.NATO_RESTRICTED;
+
+    @TestConfiguration
+    static class LargeDocumentRepository {
+
+        /*
+         * The classifications are distributed evenly. Thus, the clearance
+         * NATO_RESTRICTED grants access to 40% of the documents.
+         */
+        @Bean
+        @Primary
+        CountingDocumentRepository largeDocumentRepository() {
+            var classifications = NatoSecurityClassification.values();
+            var documents       = new ArrayList<Document>(DOCUMENTS);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                documents.add(new Document(classifications[i % classifications.length], "Document " + i,
+                        "Contents of document " + i));
+            }
+            return new CountingDocumentRepository(documents);
+        }
+
+    }
+
+    /**
+     * Counts the documents leaving the repository.
+     */
+    static class CountingDocumentRepository extends DocumentRepository {
+
+        final AtomicLong read = new AtomicLong();
+
+        CountingDocumentRepository(List<Document> documents) {
+            super(documents);
+        }
+
+        @Override
+        public Flux<Document> findAll() {
+            return super.findAll().doOnNext(document -> read.incrementAndGet());
+        }
+
+        @Override
+        public Flux<Document> findByClassificationUpTo(NatoSecurityClassification clearance) {
+            return super.findByClassificationUpTo(clearance).doOnNext(document -> read.incrementAndGet());
+        }
+
+    }
+
+    @Autowired
+    CountingDocumentRepository repository;
+
+    @Autowired
+    DocumentsService documentsService;
+
+    @MockBean
+    Clock mockClock;
+
+    @Test
+    @WithAnonymousUser
+    void whenStreamingMillionDocuments_thenReportLatencyAndDocumentsReadWithAndWithoutPushdown() {
+        // the policies grant the clearance NATO_RESTRICTED in the first 20 seconds of each minute
+        when(mockClock.instant()).thenReturn(Instant.EPOCH);
+        var constraint = JsonNodeFactory.instance.objectNode().put("type", "filterClassifiedDocuments")
+                .put("clearance", CLEARANCE.name());
+        var postFilter = new FilterClassifiedDocumentsContraintHandlerProvider().getHandler(constraint);
+
+        var postFiltered = measure("Post-filter of all documents", () -> repository.findAll().filter(postFilter));
+        var pushedDown   = measure("Clearance pushed into the repository with post-filter",
+                () -> repository.findByClassificationUpTo(CLEARANCE).filter(postFilter));
+        var enforced     = measure("DocumentsService with @PreEnforce",
+                () -> documentsService.getDocuments(ClearanceFilter.unrestricted()));
+
+        assertThat(postFiltered).isEqualTo(DOCUMENTS * 2L / 5L);
+        assertThat(pushedDown).isEqualTo(postFiltered);
+        assertThat(enforced).isEqualTo(postFiltered);
+    }
+
+    /**
+     * @return the number of documents delivered by the last run
+     */
+    private long measure(String title, Supplier<Flux<?>> query) {
+        var measurement = Measurement.measure(WARM_UP_RUNS, RUNS, repository.read::get,
+                () -> query.get().count().block());
+        log.info("{}: mean {}ms, documents leaving the repository per run {}, delivered {}", title,
+                measurement.meanMs(), measurement.countPerRun(), measurement.delivered());
+        return measurement.delivered();
+    }
+
+}
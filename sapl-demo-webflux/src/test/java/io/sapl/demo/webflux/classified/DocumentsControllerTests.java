@@ -31,10 +31,10 @@ class DocumentsControllerTests {
     void whenGetPatients_thenPatientsServiceCalled() {
         var document  = new Document(NatoSecurityClassification.NATO_RESTRICTED, "name", "contents");
         var documents = Flux.just(document);
-        when(documentsService.getDocuments()).thenReturn(documents);
+        when(documentsService.getDocuments(ClearanceFilter.unrestricted())).thenReturn(documents);
         webTestClient.get().uri("/documents").accept(MediaType.APPLICATION_JSON).exchange().expectStatus().isOk()
                 .expectBodyList(Document.class).value(Function.identity(), hasItem(document));
-        verify(documentsService, times(1)).getDocuments();
+        verify(documentsService, times(1)).getDocuments(ClearanceFilter.unrestricted());
     }
 
 }
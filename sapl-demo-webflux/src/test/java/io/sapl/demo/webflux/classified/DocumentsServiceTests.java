@@ -1,5 +1,7 @@
 package io.sapl.demo.webflux.classified;
 
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.Clock;
@@ -11,6 +13,7 @@
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 
 import reactor.test.StepVerifier;
@@ -24,15 +27,27 @@ class DocumentsServiceTests {
     @MockBean
     Clock mockClock;
 
+    @SpyBean
+    DocumentRepository documentRepository;
+
     @Test
     @WithAnonymousUser
     void whenTimeZeroSecondOfMinute_thenAllRestricted() {
         when(mockClock.instant()).thenReturn(Instant.EPOCH);
-        StepVerifier.create(documentsService.getDocuments())
+        StepVerifier.create(documentsService.getDocuments(ClearanceFilter.unrestricted()))
                 .thenConsumeWhile(documentMactchesClearanceLevel(NatoSecurityClassification.NATO_RESTRICTED))
                 .verifyComplete();
     }
 
+    @Test
+    @WithAnonymousUser
+    void whenTimeZeroSecondOfMinute_thenClearancePushedDownToRepository() {
+        when(mockClock.instant()).thenReturn(Instant.EPOCH);
+        StepVerifier.create(documentsService.getDocuments(ClearanceFilter.unrestricted())).expectNextCount(2).verifyComplete();
+        verify(documentRepository).findByClassificationUpTo(NatoSecurityClassification.NATO_RESTRICTED);
+        verify(documentRepository, never()).findAll();
+    }
+
     private Predicate<Document> documentMactchesClearanceLevel(NatoSecurityClassification clearance) {
         return doc -> clearanceMatchesOrIsHigherThanClassification(clearance, doc.classification());
     }
@@ -46,7 +61,7 @@ private boolean clearanceMatchesOrIsHigherThanClassification(NatoSecurityClassif
     @WithAnonymousUser
     void whenTime25thSecondOfMinute_thenAllTopSecret() {
         when(mockClock.instant()).thenReturn(Instant.EPOCH.plus(Duration.ofSeconds(25)));
-        StepVerifier.create(documentsService.getDocuments())
+        StepVerifier.create(documentsService.getDocuments(ClearanceFilter.unrestricted()))
                 .thenConsumeWhile(documentMactchesClearanceLevel(NatoSecurityClassification.COSMIC_TOP_SECRET))
                 .verifyComplete();
     }
@@ -55,7 +70,7 @@ void whenTime25thSecondOfMinute_thenAllTopSecret() {
     @WithAnonymousUser
     void whenTime45thSecondOfMinute_thenAllUnclassified() {
         when(mockClock.instant()).thenReturn(Instant.EPOCH.plus(Duration.ofSeconds(45)));
-        StepVerifier.create(documentsService.getDocuments())
+        StepVerifier.create(documentsService.getDocuments(ClearanceFilter.unrestricted()))
                 .thenConsumeWhile(documentMactchesClearanceLevel(NatoSecurityClassification.NATO_UNCLASSIFIED))
                 .verifyComplete();
     }
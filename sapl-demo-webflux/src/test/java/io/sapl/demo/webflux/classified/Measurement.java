@@ -0,0 +1,61 @@
+package io.sapl.demo.webflux.classified;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The latency of a query measured by a benchmark. The query is run a number of
+ * times for warm-up first, then the latency of each further run is recorded.
+ *
+ * @param meanMs      the mean latency in milliseconds
+ * @param maxMs       the maximal latency in milliseconds
+ * @param delivered   the number of elements delivered by the last run
+ * @param countPerRun the mean increase of a counter per measured run, e.g., of
+ *                    the documents read from the repository
+ */
+record Measurement(double meanMs, double maxMs, long delivered, double countPerRun) {
+
+    private static final double MILLION = 1_000_000.0D;
+
+    /**
+     * @param warmUpRuns the runs before the measurement
+     * @param runs       the measured runs
+     * @param query      creates the query to measure, which is consumed
+     *                   completely by each run
+     * @return the latency of the measured runs
+     */
+    static Measurement measure(int warmUpRuns, int runs, Supplier<? extends Flux<?>> query) {
+        return measure(warmUpRuns, runs, () -> 0L, () -> query.get().count().block());
+    }
+
+    /**
+     * @param warmUpRuns the runs before the measurement
+     * @param runs       the measured runs
+     * @param counter    a counter increased by the operation, read before and
+     *                   after the measured runs
+     * @param run        the operation to measure, returning the number of
+     *                   delivered elements
+     * @return the latency of the measured runs and the increase of the counter
+     */
+    static Measurement measure(int warmUpRuns, int runs, LongSupplier counter, LongSupplier run) {
+        for (int i = 0; i < warmUpRuns; i++) {
+            run.getAsLong();
+        }
+        var countBefore = counter.getAsLong();
+        var latencies   = new long[runs];
+        var delivered   = 0L;
+        for (int i = 0; i < runs; i++) {
+            var start = System.nanoTime();
+            delivered    = run.getAsLong();
+            latencies[i] = System.nanoTime() - start;
+        }
+        var count = counter.getAsLong() - countBefore;
+        Arrays.sort(latencies);
+        var mean = Arrays.stream(latencies).average().orElse(0.0D);
+        return new Measurement(mean / MILLION, latencies[runs - 1] / MILLION, delivered, (double) count / runs);
+    }
+
+}